@@ -0,0 +1,72 @@
+#!/bin/bash
+
+set -euo pipefail
+
+# Пропускная способность экспорта выборки (GB/s): запись файла при POST /api/random/export
+# и отдача файла через zero-copy при GET /api/random/export/{id}, для форматов int64 и varint.
+
+# Цвета для вывода
+readonly GREEN='\033[0;32m'
+readonly RED='\033[0;31m'
+readonly NC='\033[0m' # No Color
+
+# Параметры
+readonly SERVICE_URL="${SERVICE_URL:-http://localhost:8081}"
+readonly ENDPOINT="/api/random/export"
+readonly COUNT="${COUNT:-10000000}"
+readonly SEED="${SEED:-42}"
+readonly LOG_FILE="export_benchmark_results.log"
+readonly MAX_TIMEOUT=600
+
+# Проверка необходимых команд
+command -v curl >/dev/null 2>&1 || { echo "ERROR: curl не установлен" >&2; exit 1; }
+
+# Значение поля из JSON-ответа (без jq)
+json_field() {
+    grep -o "\"$1\":\"\\?[^,\"}]*" | head -1 | sed 's/.*:"\{0,1\}//'
+}
+
+echo "=========================================="
+echo "Export benchmark для Andesis Service B"
+echo "=========================================="
+echo "URL: ${SERVICE_URL}${ENDPOINT}"
+echo "Значений: ${COUNT}, seed: ${SEED}"
+echo ""
+
+run_export() {
+    local format="$1" run="$2"
+    local response id size time_ms write_gbps result http_code bytes speed serve_gbps
+
+    response=$(curl --silent --max-time "${MAX_TIMEOUT}" -X POST \
+        "${SERVICE_URL}${ENDPOINT}?count=${COUNT}&seed=${SEED}&format=${format}") || true
+    id=$(echo "${response}" | json_field id)
+    if [ -z "${id}" ]; then
+        printf "${RED}[FAIL]${NC} %s #%s: %s\n" "${format}" "${run}" "${response}" | tee -a "${LOG_FILE}"
+        return
+    fi
+    size=$(echo "${response}" | json_field sizeBytes)
+    time_ms=$(echo "${response}" | json_field processingTimeMs)
+    write_gbps=$(awk -v s="${size}" -v t="${time_ms}" 'BEGIN { printf "%.2f", (t > 0 ? s / 1e6 / t : 0) }')
+
+    result=$(curl --silent --output /dev/null --max-time "${MAX_TIMEOUT}" \
+        --write-out "%{http_code} %{size_download} %{speed_download}" \
+        "${SERVICE_URL}${ENDPOINT}/${id}") || true
+    read -r http_code bytes speed <<< "${result}"
+    serve_gbps=$(awk -v s="${speed}" 'BEGIN { printf "%.2f", s / 1e9 }')
+
+    curl --silent --output /dev/null -X DELETE "${SERVICE_URL}${ENDPOINT}/${id}" || true
+
+    if [ "${http_code}" = "200" ] && [ "${bytes}" = "${size}" ]; then
+        printf "${GREEN}[OK]${NC} %s #%s: %s bytes (%.2f B/value), write %s GB/s, serve %s GB/s\n" \
+            "${format}" "${run}" "${size}" "$(awk -v s="${size}" -v c="${COUNT}" 'BEGIN { print s / c }')" \
+            "${write_gbps}" "${serve_gbps}" | tee -a "${LOG_FILE}"
+    else
+        printf "${RED}[FAIL]${NC} %s #%s: download HTTP %s, %s of %s bytes\n" \
+            "${format}" "${run}" "${http_code}" "${bytes}" "${size}" | tee -a "${LOG_FILE}"
+    fi
+}
+
+for i in 1 2 3; do
+    run_export int64 "${i}"
+    run_export varint "${i}"
+done
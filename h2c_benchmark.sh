@@ -0,0 +1,84 @@
+#!/bin/bash
+
+set -euo pipefail
+
+# Сравнение латентности Service A -> Service B для HTTP/1.1 и h2c при высокой конкурентности.
+#
+# Протокол клиента задаётся при старте Service A, поэтому скрипт прогоняет одну конфигурацию:
+#   export APP_WEBCLIENT_PROTOCOL=http11; docker-compose up -d --force-recreate service-a && ./h2c_benchmark.sh
+#   export APP_WEBCLIENT_PROTOCOL=h2c;    docker-compose up -d --force-recreate service-a && ./h2c_benchmark.sh
+# и сравнить строки в h2c_benchmark_results.log
+
+# Цвета для вывода
+readonly GREEN='\033[0;32m'
+readonly YELLOW='\033[1;33m'
+readonly NC='\033[0m' # No Color
+
+# Параметры
+readonly SERVICE_URL="${SERVICE_URL:-http://localhost:8080}"
+readonly ENDPOINT="/api/client/random-stats"
+readonly ACTUATOR="${SERVICE_URL}/api/actuator/metrics"
+readonly CONCURRENCY="${CONCURRENCY:-200}"
+readonly REQUESTS="${REQUESTS:-5000}"
+readonly COUNT="${COUNT:-1000}"
+readonly LABEL="${APP_WEBCLIENT_PROTOCOL:-http11}"
+readonly LOG_FILE="h2c_benchmark_results.log"
+
+# Проверка необходимых команд
+command -v curl >/dev/null 2>&1 || { echo "ERROR: curl не установлен" >&2; exit 1; }
+command -v xargs >/dev/null 2>&1 || { echo "ERROR: xargs не установлен" >&2; exit 1; }
+
+# Значение метрики пула из actuator (первое measurement)
+metric() {
+    curl --silent "${ACTUATOR}/$1" 2>/dev/null | grep -o '"value":[0-9.E+-]*' | head -1 | cut -d':' -f2 || echo "N/A"
+}
+
+# Перцентиль по отсортированному файлу латентностей (в секундах)
+percentile() {
+    local file="$1" p="$2" n idx
+    n=$(wc -l < "${file}")
+    idx=$(( (n * p + 99) / 100 ))
+    [ "${idx}" -lt 1 ] && idx=1
+    sed -n "${idx}p" "${file}"
+}
+
+echo "=========================================="
+echo "HTTP/1.1 vs h2c benchmark для Andesis Service A"
+echo "=========================================="
+echo "URL: ${SERVICE_URL}${ENDPOINT}?count=${COUNT}"
+echo "Протокол клиента: ${LABEL}"
+echo "Конкурентность: ${CONCURRENCY}, запросов: ${REQUESTS}"
+echo ""
+
+latencies=$(mktemp)
+trap 'rm -f "${latencies}" "${latencies}.sorted"' EXIT
+
+start=$(date +%s%3N)
+seq "${REQUESTS}" | xargs -P "${CONCURRENCY}" -I{} \
+    curl --silent --output /dev/null --max-time 120 \
+        --write-out "%{http_code} %{time_total}\n" \
+        "${SERVICE_URL}${ENDPOINT}?count=${COUNT}&min=0&max=1000000" >> "${latencies}"
+end=$(date +%s%3N)
+
+total_ms=$((end - start))
+ok=$(grep -c '^200 ' "${latencies}" || true)
+failed=$((REQUESTS - ok))
+grep '^200 ' "${latencies}" | cut -d' ' -f2 | sort -n > "${latencies}.sorted"
+
+p50=$(percentile "${latencies}.sorted" 50)
+p95=$(percentile "${latencies}.sorted" 95)
+p99=$(percentile "${latencies}.sorted" 99)
+rps=$(awk -v n="${ok}" -v ms="${total_ms}" 'BEGIN { printf "%.1f", n * 1000 / ms }')
+
+printf "${GREEN}[%s]${NC} ok=%s failed=%s rps=%s p50=%ss p95=%ss p99=%ss\n" \
+    "${LABEL}" "${ok}" "${failed}" "${rps}" "${p50}" "${p95}" "${p99}" | tee -a "${LOG_FILE}"
+
+echo ""
+echo "Метрики пула соединений (после прогона):"
+echo "  total.connections:  $(metric reactor.netty.connection.provider.total.connections)"
+echo "  active.connections: $(metric reactor.netty.connection.provider.active.connections)"
+echo "  pending.connections: $(metric reactor.netty.connection.provider.pending.connections)"
+echo "  active.streams:     $(metric reactor.netty.connection.provider.active.streams)"
+echo "  pending.streams:    $(metric reactor.netty.connection.provider.pending.streams)"
+echo ""
+printf "${YELLOW}ВАЖНО:${NC} для сравнения запустите скрипт для обоих значений APP_WEBCLIENT_PROTOCOL.\n"
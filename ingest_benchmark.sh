@@ -0,0 +1,62 @@
+#!/bin/bash
+
+set -euo pipefail
+
+# Пропускная способность POST /api/statistics/ingest (MB/s) для обоих форматов тела:
+# десятичный текст по строке на число и сырые int64 little-endian.
+
+# Цвета для вывода
+readonly GREEN='\033[0;32m'
+readonly RED='\033[0;31m'
+readonly NC='\033[0m' # No Color
+
+# Параметры
+readonly SERVICE_URL="${SERVICE_URL:-http://localhost:8081}"
+readonly ENDPOINT="/api/statistics/ingest"
+readonly VALUES="${VALUES:-20000000}"
+readonly WORK_DIR="${WORK_DIR:-$(mktemp -d)}"
+readonly LOG_FILE="ingest_benchmark_results.log"
+readonly MAX_TIMEOUT=600
+
+# Проверка необходимых команд
+command -v curl >/dev/null 2>&1 || { echo "ERROR: curl не установлен" >&2; exit 1; }
+command -v perl >/dev/null 2>&1 || { echo "ERROR: perl не установлен" >&2; exit 1; }
+
+trap 'rm -rf "${WORK_DIR}"' EXIT
+
+echo "=========================================="
+echo "Ingest benchmark для Andesis Service B"
+echo "=========================================="
+echo "URL: ${SERVICE_URL}${ENDPOINT}"
+echo "Значений: ${VALUES}"
+echo ""
+
+echo "Генерация данных в ${WORK_DIR}..."
+perl -e 'srand(42); print int(rand(2_000_000_000)) - 1_000_000_000, "\n" for 1..$ARGV[0]' "${VALUES}" > "${WORK_DIR}/values.txt"
+perl -e 'srand(42); binmode STDOUT; print pack("q<", int(rand(2_000_000_000)) - 1_000_000_000) for 1..$ARGV[0]' "${VALUES}" > "${WORK_DIR}/values.bin"
+echo ""
+
+# Загрузка файла и расчёт MB/s по размеру тела и полному времени запроса
+run_ingest() {
+    local file="$1" content_type="$2" label="$3"
+    local result http_code size time_total mbps
+
+    result=$(curl --silent --output /dev/null --max-time "${MAX_TIMEOUT}" \
+        --header "Content-Type: ${content_type}" \
+        --data-binary "@${file}" \
+        --write-out "%{http_code} %{size_upload} %{time_total}" \
+        "${SERVICE_URL}${ENDPOINT}") || true
+
+    read -r http_code size time_total <<< "${result}"
+    if [ "${http_code}" = "200" ]; then
+        mbps=$(awk -v s="${size}" -v t="${time_total}" 'BEGIN { printf "%.1f", s / 1048576 / t }')
+        printf "${GREEN}[OK]${NC} %s: %s bytes in %ss - %s MB/s\n" "${label}" "${size}" "${time_total}" "${mbps}" | tee -a "${LOG_FILE}"
+    else
+        printf "${RED}[FAIL]${NC} %s: HTTP %s\n" "${label}" "${http_code}" | tee -a "${LOG_FILE}"
+    fi
+}
+
+for i in 1 2 3; do
+    run_ingest "${WORK_DIR}/values.txt" "text/plain" "decimal #${i}"
+    run_ingest "${WORK_DIR}/values.bin" "application/octet-stream" "int64-le #${i}"
+done
@@ -0,0 +1,51 @@
+#!/bin/bash
+
+set -euo pipefail
+
+# Стоимость скетчей distinct/top-k на одно значение: сравнение processingTimeMs
+# Service B для одинаковых запросов с sketches=false и sketches=true.
+
+# Цвета для вывода
+readonly GREEN='\033[0;32m'
+readonly NC='\033[0m' # No Color
+
+# Параметры
+readonly SERVICE_URL="${SERVICE_URL:-http://localhost:8081}"
+readonly ENDPOINT="/api/random/statistics"
+readonly COUNT="${COUNT:-10000000}"
+readonly RUNS="${RUNS:-5}"
+readonly LOG_FILE="sketch_benchmark_results.log"
+
+# Проверка необходимых команд
+command -v curl >/dev/null 2>&1 || { echo "ERROR: curl не установлен" >&2; exit 1; }
+
+# Минимальное processingTimeMs за RUNS запусков (первый запуск - прогрев JIT)
+measure() {
+    local min="$1" max="$2" sketches="$3"
+    local best="" time
+
+    curl --silent --output /dev/null "${SERVICE_URL}${ENDPOINT}?count=${COUNT}&min=${min}&max=${max}&sketches=${sketches}"
+    for _ in $(seq "${RUNS}"); do
+        time=$(curl --silent "${SERVICE_URL}${ENDPOINT}?count=${COUNT}&min=${min}&max=${max}&sketches=${sketches}" \
+            | grep -o '"processingTimeMs":[0-9]*' | cut -d':' -f2)
+        if [ -z "${best}" ] || [ "${time}" -lt "${best}" ]; then
+            best="${time}"
+        fi
+    done
+    echo "${best}"
+}
+
+echo "=========================================="
+echo "Sketch overhead benchmark для Andesis Service B"
+echo "=========================================="
+echo "URL: ${SERVICE_URL}${ENDPOINT}, count=${COUNT}, runs=${RUNS}"
+echo ""
+
+for range in "0 1000" "-1000000 1000000" "-1000000000 1000000000"; do
+    read -r min max <<< "${range}"
+    plain=$(measure "${min}" "${max}" false)
+    sketched=$(measure "${min}" "${max}" true)
+    overhead=$(awk -v a="${plain}" -v b="${sketched}" -v n="${COUNT}" 'BEGIN { printf "%.2f", (b - a) * 1000000 / n }')
+    printf "${GREEN}[%s..%s]${NC} без скетчей: %sms, со скетчами: %sms, overhead: %s ns/value\n" \
+        "${min}" "${max}" "${plain}" "${sketched}" "${overhead}" | tee -a "${LOG_FILE}"
+done
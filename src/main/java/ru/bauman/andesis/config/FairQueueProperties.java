@@ -0,0 +1,103 @@
+package ru.bauman.andesis.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Настройки взвешенной справедливой очереди (app.fair-queue.*) перед StatisticsCalculator.
+ *
+ * Значения по умолчанию не строже поведения без очереди: генерация и раньше была ограничена
+ * пулом boundedElastic (10 * CPU потоков, очередь до 100000 задач).
+ */
+@Data
+@Validated
+@Component
+@ConfigurationProperties(prefix = "app.fair-queue")
+public class FairQueueProperties {
+
+    /**
+     * Включает очередь; при false запросы выполняются сразу, как раньше.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Сколько запросов всех арендаторов генерируется одновременно.
+     */
+    @Positive
+    private int maxConcurrency = Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE;
+
+    /**
+     * Квант DRR в "стоимости" (количестве чисел) на единицу веса за раунд.
+     * Должен быть больше 0, иначе кредит арендатора никогда не растёт.
+     */
+    @Positive
+    private long quantum = 1_000_000;
+
+    /**
+     * Максимум различных арендаторов; остальные попадают в арендатора по умолчанию.
+     */
+    @Positive
+    private int maxTenants = 100;
+
+    /**
+     * Квоты для арендаторов, не перечисленных в tenants.
+     */
+    @Valid
+    private TenantQuota defaults = new TenantQuota();
+
+    /**
+     * Квоты по арендаторам.
+     */
+    private Map<String, @Valid TenantQuota> tenants = new LinkedHashMap<>();
+
+    /**
+     * Соответствие API-ключ (X-API-Key) → арендатор.
+     */
+    private Map<String, String> apiKeys = new LinkedHashMap<>();
+
+    /**
+     * API-ключи доверенных сервисов (Сервис A), которым разрешено передавать арендатора
+     * своего клиента в X-Tenant-Id. Остальным клиентам X-Tenant-Id доверяется, только если
+     * не настроены ни api-keys, ни trusted-api-keys.
+     */
+    private Set<String> trustedApiKeys = new LinkedHashSet<>();
+
+    @Data
+    public static class TenantQuota {
+
+        /**
+         * Вес в DRR: доля пропускной способности пропорциональна весу.
+         */
+        @Positive
+        private int weight = 1;
+
+        /**
+         * Одновременно выполняемых запросов арендатора; по умолчанию ограничен только общим maxConcurrency.
+         */
+        @Positive
+        private int maxConcurrency = Integer.MAX_VALUE;
+
+        /**
+         * Максимальная длина очереди арендатора, сверх неё - 429.
+         */
+        @PositiveOrZero
+        private int maxQueued = Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE;
+
+        /**
+         * Запросов в секунду (token bucket), 0 - без ограничения.
+         */
+        @PositiveOrZero
+        private double ratePerSecond = 0;
+    }
+}
@@ -9,39 +9,144 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.Http2AllocationStrategy;
 import reactor.netty.http.client.HttpClient;
 import reactor.netty.resources.ConnectionProvider;
+import ru.bauman.andesis.util.ServerTiming;
 
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Конфигурация WebClient для обращения к Сервису B.
+ *
+ * Все параметры пула соединений вынесены в app.webclient.pool.*, протокол выбирается
+ * через app.webclient.protocol:
+ * - http11 - классический HTTP/1.1, один запрос на соединение в каждый момент времени
+ * - h2c    - HTTP/2 без TLS (prior knowledge), множество запросов мультиплексируются
+ *            поверх нескольких соединений (app.webclient.h2.*)
+ *
+ * Метрики пула (reactor.netty.connection.provider.*) и HTTP-клиента (reactor.netty.http.client.*)
+ * публикуются в Micrometer при app.webclient.pool.metrics-enabled=true.
+ *
+ * doOnRequest отмечает момент получения соединения из пула, чтобы Server-Timing разделял
+ * ожидание пула (pool) и сетевой обмен с Сервисом B (network).
+ */
 @Slf4j
 @Configuration
 public class WebClientConfig {
 
+    private static final String PROTOCOL_H2C = "h2c";
+    private static final String LEASING_LIFO = "lifo";
+
     @Value("${app.webclient.timeout-seconds:60}")
     private long timeoutSeconds;
 
+    @Value("${app.webclient.protocol:http11}")
+    private String protocol;
+
+    @Value("${app.webclient.pool.name:service-b}")
+    private String poolName;
+
+    @Value("${app.webclient.pool.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${app.webclient.pool.pending-acquire-max-count:200}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${app.webclient.pool.pending-acquire-timeout:45s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${app.webclient.pool.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${app.webclient.pool.max-life-time:5m}")
+    private Duration maxLifeTime;
+
+    @Value("${app.webclient.pool.leasing-strategy:fifo}")
+    private String leasingStrategy;
+
+    @Value("${app.webclient.pool.evict-in-background:30s}")
+    private Duration evictInBackground;
+
+    @Value("${app.webclient.pool.metrics-enabled:true}")
+    private boolean metricsEnabled;
+
+    @Value("${app.webclient.h2.max-concurrent-streams:100}")
+    private long maxConcurrentStreams;
+
+    @Value("${app.webclient.h2.min-connections:1}")
+    private int minConnections;
+
     @Bean
     public WebClient webClient() {
-        log.info("Configuring WebClient with timeout: {} seconds", timeoutSeconds);
+        boolean h2c = PROTOCOL_H2C.equalsIgnoreCase(protocol);
 
-        ConnectionProvider connectionProvider = ConnectionProvider.builder("custom")
-                .maxConnections(100)
-                .pendingAcquireTimeout(Duration.ofSeconds(45))
-                .build();
+        log.info("Configuring WebClient: protocol={}, timeout={}s, maxConnections={}, pendingAcquireMaxCount={}, " +
+                        "pendingAcquireTimeout={}, maxIdleTime={}, maxLifeTime={}, leasing={}, evictInBackground={}",
+                h2c ? PROTOCOL_H2C : "http11", timeoutSeconds, maxConnections, pendingAcquireMaxCount,
+                pendingAcquireTimeout, maxIdleTime, maxLifeTime, leasingStrategy, evictInBackground);
 
-        HttpClient httpClient = HttpClient.create(connectionProvider)
+        HttpClient httpClient = HttpClient.create(connectionProvider(h2c))
+                .protocol(h2c ? HttpProtocol.H2C : HttpProtocol.HTTP11)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) (timeoutSeconds * 1000))
                 .option(ChannelOption.SO_KEEPALIVE, true)
                 .responseTimeout(Duration.ofSeconds(timeoutSeconds))
-                .doOnConnected(conn -> conn
-                        .addHandlerLast(new ReadTimeoutHandler(timeoutSeconds, TimeUnit.SECONDS))
-                        .addHandlerLast(new WriteTimeoutHandler(timeoutSeconds, TimeUnit.SECONDS))
-                );
+                .metrics(metricsEnabled, WebClientConfig::stripQuery)
+                .doOnRequest((request, connection) -> ServerTiming.from(request.currentContextView()).markConnected());
+
+        if (!h2c) {
+            // Для HTTP/2 таймауты чтения/записи на уровне канала закрывали бы всё мультиплексированное
+            // соединение целиком, поэтому там полагаемся только на responseTimeout (он per-stream)
+            httpClient = httpClient.doOnConnected(conn -> conn
+                    .addHandlerLast(new ReadTimeoutHandler(timeoutSeconds, TimeUnit.SECONDS))
+                    .addHandlerLast(new WriteTimeoutHandler(timeoutSeconds, TimeUnit.SECONDS))
+            );
+        }
 
         return WebClient.builder()
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
     }
+
+    private ConnectionProvider connectionProvider(boolean h2c) {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder(poolName)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .metrics(metricsEnabled);
+
+        if (h2c) {
+            // Для HTTP/2 лимит задаётся стратегией аллокации: соединений мало, потоков на каждом много
+            builder.allocationStrategy(Http2AllocationStrategy.builder()
+                    .maxConnections(maxConnections)
+                    .minConnections(minConnections)
+                    .maxConcurrentStreams(maxConcurrentStreams)
+                    .build());
+        } else {
+            builder.maxConnections(maxConnections);
+        }
+
+        if (LEASING_LIFO.equalsIgnoreCase(leasingStrategy)) {
+            builder.lifo();
+        } else {
+            builder.fifo();
+        }
+
+        if (!evictInBackground.isZero()) {
+            builder.evictInBackground(evictInBackground);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Убирает query-string из тега uri, чтобы count/min/max не раздували кардинальность метрик.
+     */
+    private static String stripQuery(String uri) {
+        int queryStart = uri.indexOf('?');
+        return queryStart < 0 ? uri : uri.substring(0, queryStart);
+    }
 }
@@ -27,12 +27,15 @@ public class ClientController {
             @RequestParam(name = "count", required = false) Long count,
             @RequestParam(name = "min", required = false) Long min,
             @RequestParam(name = "max", required = false) Long max,
-            @RequestParam(name = "range", required = false) Long range) {
+            @RequestParam(name = "range", required = false) Long range,
+            @RequestParam(name = "seed", required = false) Long seed,
+            @RequestParam(name = "parallelism", required = false) Integer parallelism,
+            @RequestParam(name = "sketches", required = false) Boolean sketches) {
 
-        log.debug("ClientController: GET /api/client/random-stats with params: count={}, min={}, max={}, range={}",
-                count, min, max, range);
+        log.debug("ClientController: GET /api/client/random-stats with params: count={}, min={}, max={}, range={}, seed={}, parallelism={}, sketches={}",
+                count, min, max, range, seed, parallelism, sketches);
 
-        return clientService.fetchRandomStatistics(count, min, max, range)
+        return clientService.fetchRandomStatistics(count, min, max, range, seed, parallelism, sketches)
                 .map(stats -> {
                     log.info("Returning statistics to client: count={}, mean={}", stats.getCount(), stats.getMean());
                     return ResponseEntity.ok(stats);
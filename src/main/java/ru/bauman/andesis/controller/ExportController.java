@@ -0,0 +1,95 @@
+package ru.bauman.andesis.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.bauman.andesis.dto.SampleExportDto;
+import ru.bauman.andesis.service.SampleExportService;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/random")
+public class ExportController {
+
+    private static final int FALLBACK_BUFFER_SIZE = 64 * 1024;
+
+    private final SampleExportService exportService;
+
+    public ExportController(SampleExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @PostMapping("/export")
+    public Mono<ResponseEntity<SampleExportDto>> export(
+            @RequestParam(name = "count", required = false, defaultValue = "1000") Long count,
+            @RequestParam(name = "min", required = false, defaultValue = "-1000000") Long min,
+            @RequestParam(name = "max", required = false, defaultValue = "1000000") Long max,
+            @RequestParam(name = "seed", required = false) Long seed,
+            @RequestParam(name = "format", required = false, defaultValue = "int64") String format,
+            @RequestParam(name = "sketches", required = false) Boolean sketches) {
+
+        log.debug("ExportController: POST /api/random/export with params: count={}, min={}, max={}, seed={}, format={}, sketches={}",
+                count, min, max, seed, format, sketches);
+
+        return Mono.defer(() -> exportService.export(count, min, max, seed, SampleExportService.Format.of(format), sketches))
+                .map(export -> {
+                    log.info("Returning export {}: {} values, {} bytes ({})",
+                            export.getId(), export.getStatistics().getCount(), export.getSizeBytes(), export.getFormat());
+                    return ResponseEntity.ok(export);
+                })
+                .doOnError(e -> log.error("Error exporting sample: {}", e.getMessage()));
+    }
+
+    /**
+     * Отдаёт файл через ZeroCopyHttpOutputMessage: Reactor Netty пишет его в сокет FileRegion'ом
+     * (sendfile), минуя heap и пользовательские буферы. Если ответ обёрнут и zero-copy недоступен -
+     * обычное чтение файла буферами.
+     *
+     * Оба способа открывают файл только при записи тела, уже после выхода из обработчика, поэтому
+     * экспорт закреплён (SampleExportService.acquire) до завершения или отмены записи: параллельный
+     * DELETE или TTL не удалит файл посреди ответа.
+     */
+    @GetMapping("/export/{id}")
+    public Mono<Void> download(@PathVariable("id") String id, ServerHttpResponse response) {
+        return Mono.using(() -> exportService.acquire(id), lease -> {
+            SampleExportService.ExportFile export = lease.file();
+
+            HttpHeaders headers = response.getHeaders();
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.setContentLength(export.sizeBytes());
+            headers.setContentDisposition(ContentDisposition.attachment()
+                    .filename("andesis-" + id + "." + export.format().getLabel())
+                    .build());
+
+            if (response instanceof ZeroCopyHttpOutputMessage zeroCopy) {
+                log.debug("Serving export {} ({} bytes) with zero-copy", id, export.sizeBytes());
+                return zeroCopy.writeWith(export.path(), 0, export.sizeBytes());
+            }
+
+            log.debug("Serving export {} ({} bytes) with buffered reads", id, export.sizeBytes());
+            return response.writeWith(DataBufferUtils.read(export.path(), response.bufferFactory(), FALLBACK_BUFFER_SIZE));
+        }, SampleExportService.Lease::close);
+    }
+
+    @DeleteMapping("/export/{id}")
+    public Mono<ResponseEntity<Void>> delete(@PathVariable("id") String id) {
+        return Mono.fromCallable(() -> exportService.delete(id)
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build())
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
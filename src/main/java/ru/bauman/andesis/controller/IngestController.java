@@ -0,0 +1,61 @@
+package ru.bauman.andesis.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import ru.bauman.andesis.dto.RandomStatisticsDto;
+import ru.bauman.andesis.service.IngestService;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/statistics")
+public class IngestController {
+
+    private final IngestService ingestService;
+
+    public IngestController(IngestService ingestService) {
+        this.ingestService = ingestService;
+    }
+
+    @PostMapping(path = "/ingest", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public Mono<ResponseEntity<RandomStatisticsDto>> ingestDecimal(
+            ServerHttpRequest request,
+            @RequestParam(name = "min", required = false, defaultValue = "-1000000000") Long min,
+            @RequestParam(name = "max", required = false, defaultValue = "1000000000") Long max,
+            @RequestParam(name = "sketches", required = false) Boolean sketches) {
+
+        log.debug("IngestController: POST /api/statistics/ingest (decimal) with histogram range [{}, {}]", min, max);
+
+        return ingest(request, IngestService.Encoding.DECIMAL, min, max, sketches);
+    }
+
+    @PostMapping(path = "/ingest", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Mono<ResponseEntity<RandomStatisticsDto>> ingestInt64(
+            ServerHttpRequest request,
+            @RequestParam(name = "min", required = false, defaultValue = "-1000000000") Long min,
+            @RequestParam(name = "max", required = false, defaultValue = "1000000000") Long max,
+            @RequestParam(name = "sketches", required = false) Boolean sketches) {
+
+        log.debug("IngestController: POST /api/statistics/ingest (int64 LE) with histogram range [{}, {}]", min, max);
+
+        return ingest(request, IngestService.Encoding.INT64_LE, min, max, sketches);
+    }
+
+    private Mono<ResponseEntity<RandomStatisticsDto>> ingest(ServerHttpRequest request,
+                                                             IngestService.Encoding encoding,
+                                                             long min, long max, Boolean sketches) {
+        return ingestService.ingest(request.getBody(), encoding, min, max, sketches)
+                .map(stats -> {
+                    log.info("Returning ingest statistics: count={}, min={}, max={}, mean={}, stdDev={}",
+                            stats.getCount(), stats.getMin(), stats.getMax(), stats.getMean(), stats.getStandardDeviation());
+                    return ResponseEntity.ok(stats);
+                })
+                .doOnError(e -> log.error("Error ingesting statistics: {}", e.getMessage()));
+    }
+}
@@ -26,15 +26,19 @@ public class RandomController {
             @RequestParam(name = "count", required = false, defaultValue = "1000") Long count,
             @RequestParam(name = "min", required = false, defaultValue = "-1000000") Long min,
             @RequestParam(name = "max", required = false, defaultValue = "1000000") Long max,
-            @RequestParam(name = "range", required = false) Long range) {
+            @RequestParam(name = "range", required = false) Long range,
+            @RequestParam(name = "seed", required = false) Long seed,
+            @RequestParam(name = "parallelism", required = false) Integer parallelism,
+            @RequestParam(name = "blocksPerChunk", required = false) Integer blocksPerChunk,
+            @RequestParam(name = "sketches", required = false) Boolean sketches) {
 
-        log.debug("RandomController: GET /api/random/statistics with params: count={}, min={}, max={}, range={}",
-                count, min, max, range);
+        log.debug("RandomController: GET /api/random/statistics with params: count={}, min={}, max={}, range={}, seed={}, parallelism={}, blocksPerChunk={}, sketches={}",
+                count, min, max, range, seed, parallelism, blocksPerChunk, sketches);
 
         long actualMax = max != null ? max : 1_000_000;
         long actualMin = min != null ? min : (actualMax - 1_000_000);
 
-        return statisticsCalculator.calculateStatistics(count, actualMin, actualMax)
+        return statisticsCalculator.calculateStatistics(count, actualMin, actualMax, seed, parallelism, blocksPerChunk, sketches)
                 .map(stats -> {
                     log.info("Returning statistics: count={}, min={}, max={}, mean={}, stdDev={}",
                             stats.getCount(), stats.getMin(), stats.getMax(), stats.getMean(), stats.getStandardDeviation());
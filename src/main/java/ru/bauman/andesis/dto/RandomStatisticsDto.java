@@ -1,5 +1,6 @@
 package ru.bauman.andesis.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -32,6 +33,22 @@ public class RandomStatisticsDto {
     @JsonProperty("histogram")
     private Map<String, Long> histogram;
 
+    @JsonProperty("distinctCount")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long distinctCount;
+
+    @JsonProperty("topValues")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Long> topValues;
+
+    @JsonProperty("topValuesMaxError")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long topValuesMaxError;
+
+    @JsonProperty("seed")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long seed;
+
     @JsonProperty("generatedAt")
     private long generatedAt;
 
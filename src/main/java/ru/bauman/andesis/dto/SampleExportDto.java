@@ -0,0 +1,32 @@
+package ru.bauman.andesis.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SampleExportDto {
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("format")
+    private String format;
+
+    @JsonProperty("sizeBytes")
+    private long sizeBytes;
+
+    @JsonProperty("downloadUrl")
+    private String downloadUrl;
+
+    @JsonProperty("expiresAt")
+    private long expiresAt;
+
+    @JsonProperty("statistics")
+    private RandomStatisticsDto statistics;
+}
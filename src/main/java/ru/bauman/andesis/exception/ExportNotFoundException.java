@@ -0,0 +1,7 @@
+package ru.bauman.andesis.exception;
+
+public class ExportNotFoundException extends RuntimeException {
+    public ExportNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -32,6 +32,40 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(response);
     }
 
+    @ExceptionHandler(QuotaExceededException.class)
+    public ResponseEntity<ErrorResponse> handleQuotaExceeded(
+            QuotaExceededException ex,
+            ServerWebExchange exchange) {
+
+        log.warn("Quota exceeded: {}", ex.getMessage());
+
+        ErrorResponse response = ErrorResponse.builder()
+                .error("QUOTA_EXCEEDED")
+                .message(ex.getMessage())
+                .timestamp(System.currentTimeMillis())
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
+    }
+
+    @ExceptionHandler(ExportNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleExportNotFound(
+            ExportNotFoundException ex,
+            ServerWebExchange exchange) {
+
+        log.warn("Export not found: {}", ex.getMessage());
+
+        ErrorResponse response = ErrorResponse.builder()
+                .error("NOT_FOUND")
+                .message(ex.getMessage())
+                .timestamp(System.currentTimeMillis())
+                .status(HttpStatus.NOT_FOUND.value())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+
     @ExceptionHandler(TimeoutException.class)
     public ResponseEntity<ErrorResponse> handleTimeout(
             TimeoutException ex,
@@ -0,0 +1,58 @@
+package ru.bauman.andesis.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Доступ к эндпоинту записи JFR (/api/actuator/jfr/**) только по ключу app.jfr.access-key
+ * в заголовке X-API-Key. Запись раскрывает внутреннее состояние JVM и нагружает процесс,
+ * поэтому при app.jfr.require-access-key (prod) и пустом ключе эндпоинт закрыт для всех.
+ */
+@Slf4j
+@Component
+public class JfrAccessFilter implements WebFilter {
+
+    private final String jfrPath;
+    private final byte[] accessKey;
+    private final boolean requireAccessKey;
+
+    public JfrAccessFilter(@Value("${management.endpoints.web.base-path:/actuator}") String basePath,
+                           @Value("${app.jfr.access-key:}") String accessKey,
+                           @Value("${app.jfr.require-access-key:true}") boolean requireAccessKey) {
+        this.jfrPath = basePath + "/jfr";
+        this.accessKey = accessKey.getBytes(StandardCharsets.UTF_8);
+        this.requireAccessKey = requireAccessKey;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!path.equals(jfrPath) && !path.startsWith(jfrPath + "/")) {
+            return chain.filter(exchange);
+        }
+
+        if (accessKey.length == 0 ? !requireAccessKey : hasValidKey(exchange)) {
+            return chain.filter(exchange);
+        }
+
+        log.warn("Rejected JFR endpoint request {} {}: {}", exchange.getRequest().getMethod(), path,
+                accessKey.length == 0 ? "app.jfr.access-key is not configured" : "invalid API key");
+        exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
+        return exchange.getResponse().setComplete();
+    }
+
+    private boolean hasValidKey(ServerWebExchange exchange) {
+        String provided = exchange.getRequest().getHeaders().getFirst(TenantFilter.API_KEY_HEADER);
+        // Сравнение за постоянное время, чтобы ключ нельзя было подобрать по задержке ответа
+        return provided != null && MessageDigest.isEqual(provided.getBytes(StandardCharsets.UTF_8), accessKey);
+    }
+}
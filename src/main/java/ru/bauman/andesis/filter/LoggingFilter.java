@@ -6,6 +6,9 @@ import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
+import ru.bauman.andesis.util.ServerTiming;
+
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
@@ -13,7 +16,7 @@ public class LoggingFilter implements WebFilter {
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
-        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         String method = exchange.getRequest().getMethod().toString();
         String path = exchange.getRequest().getPath().value();
         String queryString = exchange.getRequest().getQueryParams().toString();
@@ -22,11 +25,12 @@ public class LoggingFilter implements WebFilter {
 
         return chain.filter(exchange)
                 .doFinally(signalType -> {
-                    long processingTime = System.currentTimeMillis() - startTime;
+                    long processingTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
                     int status = exchange.getResponse().getStatusCode() != null ?
                             exchange.getResponse().getStatusCode().value() : 0;
-                    log.info("<<< RESPONSE: {} {} | Status: {} | Time: {}ms",
-                            method, path, status, processingTime);
+                    ServerTiming timing = exchange.getAttribute(ServerTiming.CONTEXT_KEY);
+                    log.info("<<< RESPONSE: {} {} | Status: {} | Time: {}ms | Trace: {}",
+                            method, path, status, processingTime, timing != null ? timing.getTraceId() : "-");
                 })
                 .doOnError(e -> log.error("ERROR in {} {}: {}", method, path, e.getMessage(), e));
     }
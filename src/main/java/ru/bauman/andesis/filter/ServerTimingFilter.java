@@ -0,0 +1,47 @@
+package ru.bauman.andesis.filter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import ru.bauman.andesis.util.ServerTiming;
+
+/**
+ * Создаёт ServerTiming на запрос и перед фиксацией ответа пишет заголовки Server-Timing и X-Trace-Id.
+ * Идёт первым в цепочке, чтобы total включал все остальные фильтры.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServerTimingFilter implements WebFilter {
+
+    @Value("${app.server-timing.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+
+        ServerTiming timing = ServerTiming.start(
+                exchange.getRequest().getHeaders().getFirst(ServerTiming.TRACEPARENT_HEADER));
+        exchange.getAttributes().put(ServerTiming.CONTEXT_KEY, timing);
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.beforeCommit(() -> {
+            HttpHeaders headers = response.getHeaders();
+            headers.set(ServerTiming.HEADER, timing.render());
+            headers.set(ServerTiming.TRACE_ID_HEADER, timing.getTraceId());
+            return Mono.empty();
+        });
+
+        return chain.filter(exchange)
+                .contextWrite(context -> context.put(ServerTiming.CONTEXT_KEY, timing));
+    }
+}
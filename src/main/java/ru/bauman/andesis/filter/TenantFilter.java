@@ -0,0 +1,93 @@
+package ru.bauman.andesis.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import ru.bauman.andesis.config.FairQueueProperties;
+
+import java.util.Set;
+
+/**
+ * Определяет арендатора запроса. Арендатор кладётся в атрибуты exchange и в Reactor Context.
+ *
+ * X-Tenant-Id клиент выставляет сам, поэтому главный источник - X-API-Key через app.fair-queue.api-keys.
+ * X-Tenant-Id учитывается только от доверенного сервиса (ключ из app.fair-queue.trusted-api-keys,
+ * так Сервис A передаёт арендатора своего клиента) или когда ключи не настроены вовсе (локальный запуск).
+ * Иначе - арендатор по умолчанию. Зарезервированные служебные арендаторы из X-Tenant-Id не принимаются.
+ */
+@Slf4j
+@Component
+public class TenantFilter implements WebFilter {
+
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+    public static final String API_KEY_HEADER = "X-API-Key";
+    public static final String TENANT_CONTEXT_KEY = "andesis.tenant";
+    public static final String DEFAULT_TENANT = "default";
+
+    /**
+     * Служебный арендатор сверочных пересчётов StatisticsCalculator. Зарезервирован: из X-Tenant-Id
+     * не принимается, иначе клиент мог бы занять его маленькую очередь и отключить сверки.
+     */
+    public static final String CANARY_TENANT = "canary";
+
+    private static final Set<String> RESERVED_TENANTS = Set.of(CANARY_TENANT);
+
+    private final FairQueueProperties properties;
+
+    public TenantFilter(FairQueueProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String tenant = resolveTenant(exchange.getRequest());
+        exchange.getAttributes().put(TENANT_CONTEXT_KEY, tenant);
+
+        return chain.filter(exchange)
+                .contextWrite(context -> context.put(TENANT_CONTEXT_KEY, tenant));
+    }
+
+    private String resolveTenant(ServerHttpRequest request) {
+        String apiKey = request.getHeaders().getFirst(API_KEY_HEADER);
+        boolean keysConfigured = !properties.getApiKeys().isEmpty() || !properties.getTrustedApiKeys().isEmpty();
+
+        if (apiKey != null && properties.getTrustedApiKeys().contains(apiKey)) {
+            String tenant = tenantHeader(request);
+            return tenant != null ? tenant : properties.getApiKeys().getOrDefault(apiKey, DEFAULT_TENANT);
+        }
+
+        if (apiKey != null) {
+            String mapped = properties.getApiKeys().get(apiKey);
+            if (mapped != null) {
+                return mapped;
+            }
+            log.debug("Unknown API key, using default tenant");
+            return DEFAULT_TENANT;
+        }
+
+        if (!keysConfigured) {
+            String tenant = tenantHeader(request);
+            if (tenant != null) {
+                return tenant;
+            }
+        }
+        return DEFAULT_TENANT;
+    }
+
+    private static String tenantHeader(ServerHttpRequest request) {
+        String tenant = request.getHeaders().getFirst(TENANT_HEADER);
+        if (tenant == null || tenant.isBlank()) {
+            return null;
+        }
+        tenant = tenant.trim();
+        if (RESERVED_TENANTS.contains(tenant)) {
+            log.warn("Ignoring reserved tenant '{}' from {} header", tenant, TENANT_HEADER);
+            return null;
+        }
+        return tenant;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.bauman.andesis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Слияние частичного агрегата (блок seeded-генерации) в итоговый.
+ */
+@Name("ru.bauman.andesis.AggregatorMerge")
+@Label("Aggregator Merge")
+@Category({"Andesis", "Generation"})
+@Description("Merge of a partial RandomStatsAggregator into another one")
+@StackTrace(false)
+public class AggregatorMergeEvent extends Event {
+
+    @Label("Merged Count")
+    public long mergedCount;
+
+    @Label("Total Count")
+    public long totalCount;
+
+    @Label("Sketches")
+    public boolean sketches;
+}
@@ -0,0 +1,37 @@
+package ru.bauman.andesis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Генерация статистики от начала цикла до готового агрегата (одно событие на запрос).
+ */
+@Name("ru.bauman.andesis.Generation")
+@Label("Statistics Generation")
+@Category({"Andesis", "Generation"})
+@Description("Random number generation and aggregation for one request")
+@StackTrace(false)
+public class GenerationEvent extends Event {
+
+    @Label("Count")
+    public long count;
+
+    @Label("Range Min")
+    public long min;
+
+    @Label("Range Max")
+    public long max;
+
+    @Label("Seeded")
+    public boolean seeded;
+
+    @Label("Sketches")
+    public boolean sketches;
+
+    @Label("Values Per Second")
+    public double valuesPerSecond;
+}
@@ -0,0 +1,177 @@
+package ru.bauman.andesis.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Запись JFR по требованию, без перезапуска JVM.
+ *
+ * POST   /api/actuator/jfr/start - начать запись с настройками app.jfr.*
+ * POST   /api/actuator/jfr/stop  - остановить запись (данные сохраняются до следующего start или DELETE)
+ * GET    /api/actuator/jfr       - скачать .jfr текущей или остановленной записи, не меняя её состояния;
+ *                                  каждый GET пишет свой временный файл, он удаляется после отдачи
+ * DELETE /api/actuator/jfr       - прервать запись и удалить данные
+ *
+ * Запись всегда ограничена: длительность и размер не превышают app.jfr.max-duration / app.jfr.max-size-mb,
+ * поэтому забытая запись остановится сама. Одновременно ведётся не более одной записи.
+ *
+ * События jdk.InitialEnvironmentVariable, jdk.InitialSystemProperty и jdk.InitialSecurityProperty
+ * выключены: в них попадают переменные окружения и свойства с паролями и ключами.
+ * Доступ к эндпоинту ограничивает JfrAccessFilter (ключ app.jfr.access-key).
+ */
+@Slf4j
+@Component
+@WebEndpoint(id = "jfr")
+public class JfrRecordingEndpoint {
+
+    @Value("${app.jfr.settings:default}")
+    private String defaultSettings;
+
+    @Value("${app.jfr.default-duration:60s}")
+    private Duration defaultDuration;
+
+    @Value("${app.jfr.max-duration:10m}")
+    private Duration maxDuration;
+
+    @Value("${app.jfr.max-size-mb:256}")
+    private long maxSizeMb;
+
+    private Recording recording;
+
+    @WriteOperation
+    public synchronized WebEndpointResponse<Map<String, Object>> control(@Selector String action) {
+        return switch (action) {
+            case "start" -> start();
+            case "stop" -> stop();
+            default -> new WebEndpointResponse<>(status("unknown-action"), WebEndpointResponse.STATUS_BAD_REQUEST);
+        };
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> dump() throws IOException {
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+
+        Path dumpFile = Files.createTempFile("andesis-", ".jfr");
+        try {
+            recording.dump(dumpFile);
+            log.info("Dumped on-demand JFR recording to {} ({} bytes)", dumpFile, Files.size(dumpFile));
+            // Файл удаляется, когда ответ дочитает (или бросит) поток, - параллельные GET не мешают друг другу
+            return new WebEndpointResponse<>(new InputStreamResource(
+                    Files.newInputStream(dumpFile, StandardOpenOption.DELETE_ON_CLOSE)));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(dumpFile);
+            throw e;
+        }
+    }
+
+    @DeleteOperation
+    public synchronized WebEndpointResponse<Map<String, Object>> cancel() {
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        closeRecording();
+        log.info("Cancelled on-demand JFR recording");
+        return new WebEndpointResponse<>(status("cancelled"));
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        closeRecording();
+    }
+
+    private WebEndpointResponse<Map<String, Object>> start() {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            return new WebEndpointResponse<>(status("already-running"), HttpStatus.CONFLICT.value());
+        }
+        closeRecording();
+
+        Duration duration = defaultDuration;
+        if (duration.isNegative() || duration.isZero() || duration.compareTo(maxDuration) > 0) {
+            duration = maxDuration;
+        }
+
+        try {
+            Recording newRecording = new Recording(recordingSettings(defaultSettings));
+            newRecording.setName("andesis-on-demand");
+            newRecording.setToDisk(true);
+            newRecording.setDuration(duration);
+            newRecording.setMaxSize(maxSizeMb * 1024 * 1024);
+            newRecording.start();
+            recording = newRecording;
+        } catch (IOException | ParseException e) {
+            log.warn("Unknown JFR settings '{}': {}", defaultSettings, e.getMessage());
+            return new WebEndpointResponse<>(status("invalid-settings"), WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+
+        log.info("Started on-demand JFR recording: settings={}, duration={}, maxSize={}MB", defaultSettings, duration, maxSizeMb);
+        return new WebEndpointResponse<>(status("started"));
+    }
+
+    private WebEndpointResponse<Map<String, Object>> stop() {
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+            log.info("Stopped on-demand JFR recording");
+        }
+        return new WebEndpointResponse<>(status("stopped"));
+    }
+
+    /**
+     * Настройки встроенной конфигурации (default, profile) без событий с окружением процесса.
+     */
+    private static Map<String, String> recordingSettings(String name) throws IOException, ParseException {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration(name).getSettings());
+        settings.put("jdk.InitialEnvironmentVariable#enabled", "false");
+        settings.put("jdk.InitialSystemProperty#enabled", "false");
+        // Событие есть только в новых JDK, на старых настройка игнорируется
+        settings.put("jdk.InitialSecurityProperty#enabled", "false");
+        return settings;
+    }
+
+    private Map<String, Object> status(String result) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("result", result);
+        if (recording != null) {
+            status.put("state", recording.getState().name());
+            status.put("duration", String.valueOf(recording.getDuration()));
+            status.put("maxSizeBytes", recording.getMaxSize());
+            status.put("startTime", String.valueOf(recording.getStartTime()));
+        }
+        return status;
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
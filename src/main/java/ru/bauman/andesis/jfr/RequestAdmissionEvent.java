@@ -0,0 +1,30 @@
+package ru.bauman.andesis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Путь запроса через справедливую очередь: длительность - ожидание от постановки до допуска.
+ */
+@Name("ru.bauman.andesis.RequestAdmission")
+@Label("Request Admission")
+@Category({"Andesis", "Fair Queue"})
+@Description("Time a request waited in its tenant queue before generation was admitted")
+@StackTrace(false)
+public class RequestAdmissionEvent extends Event {
+
+    @Label("Tenant")
+    public String tenant;
+
+    @Label("Cost")
+    @Description("Estimated cost (count of values)")
+    public long cost;
+
+    @Label("Outcome")
+    @Description("admitted, rejected-rate, rejected-queue or cancelled")
+    public String outcome;
+}
@@ -0,0 +1,32 @@
+package ru.bauman.andesis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Одна попытка запроса Сервиса A к Сервису B (каждый retry - отдельное событие).
+ */
+@Name("ru.bauman.andesis.ServiceBCall")
+@Label("Service B Call")
+@Category({"Andesis", "Client"})
+@Description("One WebClient attempt from Service A to Service B")
+@StackTrace(false)
+public class ServiceBCallEvent extends Event {
+
+    @Label("Count")
+    public long count;
+
+    @Label("Attempt")
+    public int attempt;
+
+    @Label("Outcome")
+    @Description("success, error or cancelled")
+    public String outcome;
+
+    @Label("Error")
+    public String error;
+}
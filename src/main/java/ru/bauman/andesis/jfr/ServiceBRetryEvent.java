@@ -0,0 +1,25 @@
+package ru.bauman.andesis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Решение повторить запрос к Сервису B (мгновенное событие перед backoff).
+ */
+@Name("ru.bauman.andesis.ServiceBRetry")
+@Label("Service B Retry")
+@Category({"Andesis", "Client"})
+@Description("Retry of a failed Service B request")
+@StackTrace(false)
+public class ServiceBRetryEvent extends Event {
+
+    @Label("Retry Number")
+    public long retry;
+
+    @Label("Cause")
+    public String cause;
+}
@@ -0,0 +1,59 @@
+package ru.bauman.andesis.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.bauman.andesis.util.RandomStatsAggregator;
+
+/**
+ * Создаёт агрегаторы с настройками скетчей из app.sketches.*.
+ *
+ * Память скетчей фиксирована и не зависит от count: 2^hll-precision байт на HyperLogLog
+ * и ~44 байта на каждый из top-k-capacity счётчиков SpaceSaving. Для диапазонов не шире
+ * exact-top-values-max-range вместо SpaceSaving - точные частоты, 8 байт на значение диапазона.
+ */
+@Slf4j
+@Getter
+@Component
+public class AggregatorFactory {
+
+    /**
+     * Включены ли скетчи, если запрос не указал sketches явно.
+     */
+    @Value("${app.sketches.enabled:false}")
+    private boolean sketchesEnabled;
+
+    @Value("${app.sketches.hll-precision:14}")
+    private int hllPrecision;
+
+    /**
+     * Сколько самых частых значений возвращать.
+     */
+    @Value("${app.sketches.top-k:10}")
+    private int topK;
+
+    /**
+     * Сколько счётчиков держит SpaceSaving; чем больше относительно top-k, тем точнее частоты.
+     */
+    @Value("${app.sketches.top-k-capacity:256}")
+    private int topKCapacity;
+
+    /**
+     * До какого числа значений в диапазоне (max - min + 1) top-k считается точно, 0 - всегда SpaceSaving.
+     */
+    @Value("${app.sketches.exact-top-values-max-range:65536}")
+    private int exactTopValuesMaxRange;
+
+    /**
+     * @param min минимальное значение диапазона
+     * @param max максимальное значение диапазона
+     * @param sketches вести ли HyperLogLog и SpaceSaving
+     * @return новый агрегатор
+     */
+    public RandomStatsAggregator create(long min, long max, boolean sketches) {
+        return sketches
+                ? new RandomStatsAggregator(min, max, hllPrecision, topKCapacity, exactTopValuesMaxRange)
+                : new RandomStatsAggregator(min, max);
+    }
+}
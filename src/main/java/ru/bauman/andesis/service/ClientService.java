@@ -2,17 +2,26 @@ package ru.bauman.andesis.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
+import ru.bauman.andesis.dto.ErrorResponse;
 import ru.bauman.andesis.dto.RandomStatisticsDto;
 import ru.bauman.andesis.exception.InvalidParametersException;
+import ru.bauman.andesis.exception.QuotaExceededException;
+import ru.bauman.andesis.filter.TenantFilter;
+import ru.bauman.andesis.jfr.ServiceBCallEvent;
+import ru.bauman.andesis.jfr.ServiceBRetryEvent;
+import ru.bauman.andesis.util.ServerTiming;
 import ru.bauman.andesis.util.ValidationUtil;
 
 import java.time.Duration;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
@@ -26,25 +35,47 @@ public class ClientService {
     @Value("${app.webclient.timeout-seconds:60}")
     private long timeoutSeconds;
 
+    /**
+     * Ключ Сервиса A для Сервиса B (app.fair-queue.trusted-api-keys на стороне B):
+     * с ним Сервис B принимает X-Tenant-Id клиента Сервиса A.
+     */
+    @Value("${app.webclient.service-b-api-key:}")
+    private String serviceBApiKey;
+
     public ClientService(WebClient webClient) {
         this.webClient = webClient;
     }
 
     public Mono<RandomStatisticsDto> fetchRandomStatistics(Long count, Long min, Long max, Long range) {
-        return Mono.defer(() -> {
-            log.info("Fetching random statistics: count={}, min={}, max={}, range={}", count, min, max, range);
+        return fetchRandomStatistics(count, min, max, range, null, null, null);
+    }
+
+    public Mono<RandomStatisticsDto> fetchRandomStatistics(Long count, Long min, Long max, Long range,
+                                                           Long seed, Integer parallelism, Boolean sketches) {
+        return Mono.deferContextual(context -> {
+            log.info("Fetching random statistics: count={}, min={}, max={}, range={}, seed={}, parallelism={}, sketches={}",
+                    count, min, max, range, seed, parallelism, sketches);
 
+            ServerTiming timing = ServerTiming.from(context);
             try {
+                long validateStart = System.nanoTime();
                 long validatedCount = ValidationUtil.getValidatedCount(count);
                 long validatedMax = ValidationUtil.getValidatedMax(max);
                 long validatedMin = ValidationUtil.getValidatedMin(min, validatedMax);
                 long validatedRange = ValidationUtil.getValidatedRange(range, validatedMin, validatedMax);
 
-                return performRequest(validatedCount, validatedMin, validatedMax)
+                if (parallelism != null) {
+                    ValidationUtil.validateParallelism(parallelism);
+                }
+                timing.since(ServerTiming.Stage.VALIDATE, validateStart);
+
+                return performRequest(validatedCount, validatedMin, validatedMax, seed, parallelism, sketches)
                         .timeout(Duration.ofSeconds(timeoutSeconds))
-                        .doOnSuccess(stats -> log.info("Successfully received statistics from Service B: " +
-                                        "count={}, mean={}, stdDev={}",
-                                stats.getCount(), stats.getMean(), stats.getStandardDeviation()))
+                        .doOnSuccess(stats -> {
+                            timing.markResultReady();
+                            log.info("Successfully received statistics from Service B: count={}, mean={}, stdDev={}",
+                                    stats.getCount(), stats.getMean(), stats.getStandardDeviation());
+                        })
                         .doOnError(error -> log.error("Error fetching from Service B: {}", error.getMessage()));
             } catch (InvalidParametersException e) {
                 log.warn("Invalid parameters provided to client service: {}", e.getMessage());
@@ -53,21 +84,74 @@ public class ClientService {
         });
     }
 
-    private Mono<RandomStatisticsDto> performRequest(long count, long min, long max) {
-        String url = String.format("%s/api/random/statistics?count=%d&min=%d&max=%d",
-                serviceBUrl, count, min, max);
+    private Mono<RandomStatisticsDto> performRequest(long count, long min, long max,
+                                                     Long seed, Integer parallelism, Boolean sketches) {
+        StringBuilder url = new StringBuilder(String.format("%s/api/random/statistics?count=%d&min=%d&max=%d",
+                serviceBUrl, count, min, max));
+        if (seed != null) {
+            url.append("&seed=").append(seed);
+        }
+        if (parallelism != null) {
+            url.append("&parallelism=").append(parallelism);
+        }
+        if (sketches != null) {
+            url.append("&sketches=").append(sketches);
+        }
 
         log.debug("Sending request to Service B: {}", url);
 
-        return webClient.get()
-                .uri(url)
-                .retrieve()
-                .bodyToMono(RandomStatisticsDto.class)
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Арендатор передаётся в Сервис B, чтобы справедливая очередь различала клиентов Сервиса A.
+        // Каждая подписка (в том числе повторная из retryWhen) - отдельное JFR-событие ServiceBCall
+        // и отдельная попытка в ServerTiming: pool - ожидание соединения, network - всё после него,
+        // retry - паузы backoff. Server-Timing Сервиса B добавляется к нашему с префиксом "b-"
+        return Mono.deferContextual(context -> {
+                    ServerTiming timing = ServerTiming.from(context);
+                    ServiceBCallEvent event = new ServiceBCallEvent();
+                    event.count = count;
+                    event.attempt = attempts.incrementAndGet();
+                    event.begin();
+                    timing.markAttemptStart();
+
+                    WebClient.RequestHeadersSpec<?> request = webClient.get()
+                            .uri(url.toString())
+                            .header(TenantFilter.TENANT_HEADER,
+                                    context.getOrDefault(TenantFilter.TENANT_CONTEXT_KEY, TenantFilter.DEFAULT_TENANT));
+                    if (!serviceBApiKey.isEmpty()) {
+                        request = request.header(TenantFilter.API_KEY_HEADER, serviceBApiKey);
+                    }
+                    if (timing.isEnabled()) {
+                        request = request.header(ServerTiming.TRACEPARENT_HEADER, timing.traceparent());
+                    }
+
+                    return request
+                            .retrieve()
+                            .toEntity(RandomStatisticsDto.class)
+                            .doOnNext(entity -> timing.setUpstream(entity.getHeaders().getFirst(ServerTiming.HEADER), "b-"))
+                            .mapNotNull(HttpEntity::getBody)
+                            .doOnTerminate(timing::markAttemptEnd)
+                            .doOnSuccess(stats -> commitCall(event, "success", null))
+                            .doOnError(e -> commitCall(event, "error", e))
+                            .doOnCancel(() -> commitCall(event, "cancelled", null));
+                })
                 .retryWhen(Retry.backoff(2, Duration.ofMillis(100))
                         .maxBackoff(Duration.ofSeconds(1))
                         .filter(this::isRetryable)
-                        .doBeforeRetry(signal -> log.warn("Retrying request to Service B (attempt {})",
-                                signal.totalRetries() + 1)))
+                        .doBeforeRetry(signal -> {
+                            log.warn("Retrying request to Service B (attempt {})", signal.totalRetries() + 1);
+                            ServiceBRetryEvent retryEvent = new ServiceBRetryEvent();
+                            if (retryEvent.isEnabled()) {
+                                retryEvent.retry = signal.totalRetries() + 1;
+                                retryEvent.cause = String.valueOf(signal.failure());
+                                retryEvent.commit();
+                            }
+                        }))
+                // 429 от справедливой очереди Сервиса B - квота арендатора, а не сбой: отдаём клиенту тоже 429
+                .onErrorMap(WebClientResponseException.TooManyRequests.class, e -> {
+                    log.warn("Service B rejected request with 429: {}", e.getResponseBodyAsString());
+                    return new QuotaExceededException("Service B quota exceeded: " + upstreamMessage(e), e);
+                })
                 .onErrorMap(WebClientResponseException.class, e -> {
                     log.error("WebClient error (status {}): {}", e.getRawStatusCode(), e.getResponseBodyAsString());
                     return new RuntimeException("Service B returned error: " + e.getRawStatusCode(), e);
@@ -78,9 +162,37 @@ public class ClientService {
                 });
     }
 
+    private static void commitCall(ServiceBCallEvent event, String outcome, Throwable error) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.outcome = outcome;
+            event.error = error != null ? String.valueOf(error) : null;
+            event.commit();
+        }
+    }
+
+    /**
+     * Сообщение из ErrorResponse Сервиса B, если тело удалось разобрать.
+     */
+    private static String upstreamMessage(WebClientResponseException e) {
+        try {
+            ErrorResponse error = e.getResponseBodyAs(ErrorResponse.class);
+            if (error != null && error.getMessage() != null) {
+                return error.getMessage();
+            }
+        } catch (RuntimeException ignored) {
+            // Тело не в формате ErrorResponse
+        }
+        return e.getStatusText();
+    }
+
     private boolean isRetryable(Throwable ex) {
         if (ex instanceof WebClientResponseException) {
             WebClientResponseException webEx = (WebClientResponseException) ex;
+            // Повтор после 429 только добавил бы нагрузки на перегруженную очередь арендатора
+            if (webEx.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)) {
+                return false;
+            }
             return webEx.getStatusCode().is5xxServerError();
         }
         return ex instanceof io.netty.handler.timeout.TimeoutException ||
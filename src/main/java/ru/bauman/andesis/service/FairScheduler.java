@@ -0,0 +1,323 @@
+package ru.bauman.andesis.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import ru.bauman.andesis.config.FairQueueProperties;
+import ru.bauman.andesis.exception.QuotaExceededException;
+import ru.bauman.andesis.filter.TenantFilter;
+import ru.bauman.andesis.jfr.RequestAdmissionEvent;
+import ru.bauman.andesis.util.ServerTiming;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Взвешенная справедливая очередь (Deficit Round Robin) перед генерацией статистики.
+ *
+ * У каждого арендатора своя очередь. Стоимость запроса - count (количество чисел).
+ * За раунд арендатор получает quantum * weight кредита и запускает запросы, пока хватает кредита,
+ * поэтому пакетный клиент с запросами на 10M чисел не вытесняет интерактивные запросы на 1000.
+ *
+ * Дополнительно действуют квоты арендатора: одновременные запросы, длина очереди и запросы в секунду.
+ * Метрики: andesis.fairqueue.wait (время в очереди), andesis.fairqueue.completed / .values (пропускная
+ * способность в запросах и числах), andesis.fairqueue.rejected, andesis.fairqueue.queued - все с тегом tenant.
+ * Каждый допуск или отказ также пишется в JFR (ru.bauman.andesis.RequestAdmission),
+ * время ожидания - в этап queue заголовка Server-Timing.
+ */
+@Slf4j
+@Service
+public class FairScheduler {
+
+    private final FairQueueProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, TenantQueue> queues = new HashMap<>();
+    private final ArrayDeque<TenantQueue> active = new ArrayDeque<>();
+    private int running = 0;
+
+    public FairScheduler(FairQueueProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Ставит работу в очередь арендатора из Reactor Context и запускает её, когда подойдёт очередь.
+     *
+     * @param cost оценка стоимости (количество чисел)
+     * @param work работа, подписка на которую откладывается до допуска
+     * @return результат работы
+     */
+    public <T> Mono<T> submit(long cost, Mono<T> work) {
+        if (!properties.isEnabled()) {
+            return work;
+        }
+
+        return Mono.deferContextual(context -> {
+            String tenant = context.getOrDefault(TenantFilter.TENANT_CONTEXT_KEY, TenantFilter.DEFAULT_TENANT);
+            ServerTiming timing = ServerTiming.from(context);
+
+            return Mono.<Ticket>create(sink -> {
+                        Ticket ticket = new Ticket(queueFor(tenant), cost, sink);
+                        sink.onCancel(() -> cancel(ticket));
+                        enqueue(ticket);
+                    })
+                    .flatMap(ticket -> {
+                        timing.since(ServerTiming.Stage.QUEUE, ticket.createdAt);
+                        return work.doFinally(signal -> release(ticket));
+                    });
+        });
+    }
+
+    private synchronized TenantQueue queueFor(String tenant) {
+        TenantQueue queue = queues.get(tenant);
+        if (queue != null) {
+            return queue;
+        }
+
+        if (queues.size() >= properties.getMaxTenants() && !TenantFilter.DEFAULT_TENANT.equals(tenant)) {
+            log.debug("Tenant limit {} reached, tenant '{}' is served as '{}'",
+                    properties.getMaxTenants(), tenant, TenantFilter.DEFAULT_TENANT);
+            return queueFor(TenantFilter.DEFAULT_TENANT);
+        }
+
+        FairQueueProperties.TenantQuota quota = properties.getTenants().getOrDefault(tenant, properties.getDefaults());
+        queue = new TenantQueue(tenant, quota);
+        queues.put(tenant, queue);
+        log.info("Registered tenant '{}': weight={}, maxConcurrency={}, maxQueued={}, ratePerSecond={}",
+                tenant, quota.getWeight(), quota.getMaxConcurrency(), quota.getMaxQueued(), quota.getRatePerSecond());
+        return queue;
+    }
+
+    private void enqueue(Ticket ticket) {
+        TenantQueue queue = ticket.queue;
+        List<Ticket> granted;
+
+        synchronized (this) {
+            if (!queue.tryAcquireRate()) {
+                queue.rejectedRate.increment();
+                commitAdmission(ticket, "rejected-rate");
+                ticket.sink.error(new QuotaExceededException(
+                        "Rate quota exceeded for tenant '" + queue.tenant + "' (" + queue.quota.getRatePerSecond() + " req/s)"));
+                return;
+            }
+            if (queue.pending.size() >= queue.quota.getMaxQueued()) {
+                queue.rejectedQueue.increment();
+                commitAdmission(ticket, "rejected-queue");
+                ticket.sink.error(new QuotaExceededException(
+                        "Queue quota exceeded for tenant '" + queue.tenant + "' (" + queue.quota.getMaxQueued() + " queued)"));
+                return;
+            }
+
+            ticket.enqueuedAt = System.nanoTime();
+            queue.pending.addLast(ticket);
+            if (!queue.active) {
+                queue.active = true;
+                active.addLast(queue);
+            }
+            granted = dispatch();
+        }
+
+        start(granted);
+    }
+
+    private void release(Ticket ticket) {
+        List<Ticket> granted;
+
+        synchronized (this) {
+            if (ticket.state != TicketState.RUNNING) {
+                return;
+            }
+            ticket.state = TicketState.DONE;
+            running--;
+            ticket.queue.running--;
+            ticket.queue.completed.increment();
+            ticket.queue.values.increment(ticket.cost);
+            granted = dispatch();
+        }
+
+        start(granted);
+    }
+
+    private void cancel(Ticket ticket) {
+        synchronized (this) {
+            if (ticket.state == TicketState.QUEUED && ticket.queue.pending.remove(ticket)) {
+                ticket.state = TicketState.DONE;
+                commitAdmission(ticket, "cancelled");
+                if (ticket.queue.pending.isEmpty()) {
+                    deactivate(ticket.queue);
+                }
+                return;
+            }
+        }
+        release(ticket);
+    }
+
+    /**
+     * Один проход DRR: запускает запросы, пока есть свободные слоты и арендаторы с достаточным кредитом.
+     * Вызывается под блокировкой; сами запросы стартуют уже без неё.
+     */
+    private List<Ticket> dispatch() {
+        List<Ticket> granted = null;
+        int blocked = 0;
+
+        while (running < properties.getMaxConcurrency() && !active.isEmpty() && blocked < active.size()) {
+            TenantQueue queue = active.peekFirst();
+
+            if (queue.running >= queue.quota.getMaxConcurrency()) {
+                // Арендатор упёрся в свой лимит - не копит кредит, ход переходит следующему
+                active.addLast(active.pollFirst());
+                blocked++;
+                continue;
+            }
+
+            Ticket head = queue.pending.peekFirst();
+            if (head.cost > queue.deficit) {
+                queue.deficit += properties.getQuantum() * Math.max(1, queue.quota.getWeight());
+                active.addLast(active.pollFirst());
+                blocked = 0;
+                continue;
+            }
+
+            queue.pending.pollFirst();
+            queue.deficit -= head.cost;
+            queue.running++;
+            running++;
+            head.state = TicketState.RUNNING;
+            queue.waitTimer.record(System.nanoTime() - head.enqueuedAt, TimeUnit.NANOSECONDS);
+            commitAdmission(head, "admitted");
+
+            if (granted == null) {
+                granted = new ArrayList<>();
+            }
+            granted.add(head);
+
+            if (queue.pending.isEmpty()) {
+                deactivate(queue);
+            }
+        }
+        return granted;
+    }
+
+    private void deactivate(TenantQueue queue) {
+        queue.active = false;
+        queue.deficit = 0;
+        active.remove(queue);
+    }
+
+    private static void commitAdmission(Ticket ticket, String outcome) {
+        RequestAdmissionEvent event = ticket.admission;
+        event.end();
+        if (event.shouldCommit()) {
+            event.tenant = ticket.queue.tenant;
+            event.cost = ticket.cost;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    private static void start(List<Ticket> granted) {
+        if (granted == null) {
+            return;
+        }
+        for (Ticket ticket : granted) {
+            ticket.sink.success(ticket);
+        }
+    }
+
+    private enum TicketState {
+        QUEUED, RUNNING, DONE
+    }
+
+    private static final class Ticket {
+        private final TenantQueue queue;
+        private final long cost;
+        private final MonoSink<Ticket> sink;
+        private final RequestAdmissionEvent admission = new RequestAdmissionEvent();
+        private final long createdAt = System.nanoTime();
+        private long enqueuedAt;
+        private TicketState state = TicketState.QUEUED;
+
+        private Ticket(TenantQueue queue, long cost, MonoSink<Ticket> sink) {
+            this.queue = queue;
+            this.cost = cost;
+            this.sink = sink;
+            this.admission.begin();
+        }
+    }
+
+    private final class TenantQueue {
+        private final String tenant;
+        private final FairQueueProperties.TenantQuota quota;
+        private final ArrayDeque<Ticket> pending = new ArrayDeque<>();
+        private long deficit = 0;
+        private int running = 0;
+        private boolean active = false;
+
+        // Token bucket для ratePerSecond
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        private final Timer waitTimer;
+        private final Counter completed;
+        private final Counter values;
+        private final Counter rejectedRate;
+        private final Counter rejectedQueue;
+
+        private TenantQueue(String tenant, FairQueueProperties.TenantQuota quota) {
+            this.tenant = tenant;
+            this.quota = quota;
+            this.tokens = Math.max(1, quota.getRatePerSecond());
+
+            this.waitTimer = Timer.builder("andesis.fairqueue.wait")
+                    .description("Time spent in the tenant queue before generation starts")
+                    .tag("tenant", tenant)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            this.completed = Counter.builder("andesis.fairqueue.completed")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+            this.values = Counter.builder("andesis.fairqueue.values")
+                    .description("Generated values (request cost) per tenant")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+            this.rejectedRate = Counter.builder("andesis.fairqueue.rejected")
+                    .tag("tenant", tenant)
+                    .tag("reason", "rate")
+                    .register(meterRegistry);
+            this.rejectedQueue = Counter.builder("andesis.fairqueue.rejected")
+                    .tag("tenant", tenant)
+                    .tag("reason", "queue")
+                    .register(meterRegistry);
+            Gauge.builder("andesis.fairqueue.queued", pending, ArrayDeque::size)
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+        }
+
+        private boolean tryAcquireRate() {
+            double rate = quota.getRatePerSecond();
+            if (rate <= 0) {
+                return true;
+            }
+
+            long now = System.nanoTime();
+            tokens = Math.min(Math.max(1, rate), tokens + (now - lastRefill) * rate / 1_000_000_000.0);
+            lastRefill = now;
+
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ru.bauman.andesis.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.bauman.andesis.dto.RandomStatisticsDto;
+import ru.bauman.andesis.exception.InvalidParametersException;
+import ru.bauman.andesis.util.DecimalLineDecoder;
+import ru.bauman.andesis.util.Int64LittleEndianDecoder;
+import ru.bauman.andesis.util.RandomStatsAggregator;
+import ru.bauman.andesis.util.ServerTiming;
+import ru.bauman.andesis.util.StreamingNumberDecoder;
+import ru.bauman.andesis.util.ValidationUtil;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Статистика по загружаемым данным.
+ *
+ * Тело запроса разбирается по мере поступления: каждый DataBuffer декодируется прямо в
+ * RandomStatsAggregator и сразу освобождается. publishOn с небольшим prefetch ограничивает
+ * число буферов в памяти и передаёт backpressure в Netty - пока декодер занят, новые данные
+ * из сокета не читаются.
+ */
+@Slf4j
+@Service
+public class IngestService {
+
+    /**
+     * Сколько DataBuffer'ов может ждать декодера одновременно.
+     */
+    private static final int PREFETCH = 4;
+
+    private final AggregatorFactory aggregatorFactory;
+
+    public IngestService(AggregatorFactory aggregatorFactory) {
+        this.aggregatorFactory = aggregatorFactory;
+    }
+
+    public enum Encoding {
+        DECIMAL(DecimalLineDecoder::new),
+        INT64_LE(Int64LittleEndianDecoder::new);
+
+        private final Function<RandomStatsAggregator, StreamingNumberDecoder> factory;
+
+        Encoding(Function<RandomStatsAggregator, StreamingNumberDecoder> factory) {
+            this.factory = factory;
+        }
+    }
+
+    /**
+     * Считает статистику по потоку чисел из тела запроса.
+     *
+     * @param body тело запроса
+     * @param encoding формат чисел
+     * @param min нижняя граница гистограммы
+     * @param max верхняя граница гистограммы
+     * @param sketches вести ли скетчи distinct/top-k, null - app.sketches.enabled
+     * @return статистика
+     */
+    public Mono<RandomStatisticsDto> ingest(Flux<DataBuffer> body, Encoding encoding, long min, long max,
+                                            Boolean sketches) {
+        return Mono.deferContextual(context -> {
+            ServerTiming timing = ServerTiming.from(context);
+            long validateStart = System.nanoTime();
+            ValidationUtil.validateRange(min, max);
+            long ingestStart = timing.since(ServerTiming.Stage.VALIDATE, validateStart);
+
+            RandomStatsAggregator aggregator = aggregatorFactory.create(min, max,
+                    sketches != null ? sketches : aggregatorFactory.isSketchesEnabled());
+            StreamingNumberDecoder decoder = encoding.factory.apply(aggregator);
+
+            return body
+                    .publishOn(Schedulers.boundedElastic(), PREFETCH)
+                    .doOnNext(buffer -> {
+                        try {
+                            decoder.decode(buffer);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .then(Mono.fromCallable(() -> {
+                        decoder.finish();
+                        if (aggregator.getCount() == 0) {
+                            throw new InvalidParametersException("Request body contains no values");
+                        }
+
+                        long elapsedNanos = System.nanoTime() - ingestStart;
+                        long processingTime = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+                        timing.add(ServerTiming.Stage.INGEST, elapsedNanos);
+                        log.info("Ingested {} values ({} bytes, {}) in {}ms: min={}, max={}, mean={}, stdDev={}",
+                                aggregator.getCount(), decoder.getBytesRead(), encoding, processingTime,
+                                aggregator.getMin(), aggregator.getMax(), aggregator.getMean(), aggregator.getStandardDeviation());
+
+                        return RandomStatisticsDto.builder()
+                                .count(aggregator.getCount())
+                                .min(aggregator.getMin())
+                                .max(aggregator.getMax())
+                                .mean(aggregator.getMean())
+                                .standardDeviation(aggregator.getStandardDeviation())
+                                .histogram(aggregator.getHistogramMap())
+                                .distinctCount(aggregator.getDistinctCount())
+                                .topValues(aggregator.getTopValuesMap(aggregatorFactory.getTopK()))
+                                .topValuesMaxError(aggregator.getTopValuesMaxError(aggregatorFactory.getTopK()))
+                                .generatedAt(System.currentTimeMillis())
+                                .processingTimeMs(processingTime)
+                                .build();
+                    }))
+                    .doOnSuccess(dto -> timing.markResultReady());
+        });
+    }
+}
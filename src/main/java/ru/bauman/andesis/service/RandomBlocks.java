@@ -0,0 +1,89 @@
+package ru.bauman.andesis.service;
+
+import ru.bauman.andesis.util.RandomStatsAggregator;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Поток случайных значений [min, max], разбитый на блоки по RandomNumberGenerator.BLOCK_SIZE.
+ *
+ * Общий для seeded-генерации статистики и экспорта выборки: блок i всегда получает один и тот же
+ * подпоток, поэтому файл экспорта и статистика совпадают при тех же (seed, count, min, max).
+ * Без seed все блоки берут значения из ThreadLocalRandom текущего потока.
+ *
+ * Разные блоки можно генерировать одновременно из разных потоков, один блок - только из одного.
+ */
+final class RandomBlocks {
+
+    /**
+     * Xoshiro256++: jump() сдвигает генератор на 2^128 значений, подпотоки блоков не пересекаются.
+     */
+    private static final RandomGeneratorFactory<RandomGenerator.JumpableGenerator> SEEDED_FACTORY =
+            RandomGeneratorFactory.of("Xoshiro256PlusPlus");
+
+    private final long count;
+    private final long min;
+    private final long max;
+    private final int blockCount;
+
+    // Элемент i - копия базового генератора после i прыжков; null - без seed
+    private final List<RandomGenerator> substreams;
+
+    private RandomBlocks(long count, long min, long max, List<RandomGenerator> substreams) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.blockCount = blockCount(count);
+        this.substreams = substreams;
+    }
+
+    static RandomBlocks seeded(long seed, long count, long min, long max) {
+        return new RandomBlocks(count, min, max, SEEDED_FACTORY.create(seed).jumps(blockCount(count)).toList());
+    }
+
+    static RandomBlocks unseeded(long count, long min, long max) {
+        return new RandomBlocks(count, min, max, null);
+    }
+
+    int blockCount() {
+        return blockCount;
+    }
+
+    private static int blockCount(long count) {
+        return (int) ((count + RandomNumberGenerator.BLOCK_SIZE - 1) / RandomNumberGenerator.BLOCK_SIZE);
+    }
+
+    boolean isSeeded() {
+        return substreams != null;
+    }
+
+    /**
+     * Генерирует значения блока: каждое добавляется в агрегатор и, если задан sink, передаётся ему
+     * в порядке генерации. Последний блок может быть неполным.
+     *
+     * @param block номер блока
+     * @param aggregator агрегатор блока
+     * @param sink получатель значений (например, кодировщик файла) или null
+     */
+    void generate(int block, RandomStatsAggregator aggregator, LongConsumer sink) {
+        RandomGenerator random = substreams != null ? substreams.get(block) : ThreadLocalRandom.current();
+
+        long from = (long) block * RandomNumberGenerator.BLOCK_SIZE;
+        long to = Math.min(count, from + RandomNumberGenerator.BLOCK_SIZE);
+        if (sink == null) {
+            for (long i = from; i < to; i++) {
+                aggregator.add(random.nextLong(min, max + 1));
+            }
+            return;
+        }
+        for (long i = from; i < to; i++) {
+            long value = random.nextLong(min, max + 1);
+            aggregator.add(value);
+            sink.accept(value);
+        }
+    }
+}
@@ -2,13 +2,19 @@ package ru.bauman.andesis.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import ru.bauman.andesis.dto.RandomStatisticsDto;
+import ru.bauman.andesis.jfr.GenerationEvent;
 import ru.bauman.andesis.util.RandomStatsAggregator;
+import ru.bauman.andesis.util.ServerTiming;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Оптимизированный генератор случайных чисел и вычислитель статистики.
@@ -18,11 +24,30 @@ import java.util.concurrent.ThreadLocalRandom;
  * 2. Single-pass алгоритм - все метрики за один проход вместо 6
  * 3. Streaming без хранения - не храним все числа в памяти
  * 4. Примитивные типы - прямое преобразование long → double без String
+ *
+ * Для воспроизводимых запросов (задан seed) поток значений делится на блоки фиксированного
+ * размера (RandomBlocks), каждый блок получает свой подпоток jumpable-генератора, поэтому результат
+ * не зависит от числа потоков и размера чанка.
+ *
+ * Ожидание потока boundedElastic и сам цикл генерации пишутся в этапы schedule и generate
+ * заголовка Server-Timing; processingTimeMs считается по System.nanoTime.
  */
 @Slf4j
 @Service
 public class RandomNumberGenerator {
 
+    /**
+     * Размер логического блока. Блок - единица разбиения потока случайных чисел,
+     * его нельзя менять без потери воспроизводимости ранее полученных результатов.
+     */
+    public static final int BLOCK_SIZE = 1 << 16;
+
+    private final AggregatorFactory aggregatorFactory;
+
+    public RandomNumberGenerator(AggregatorFactory aggregatorFactory) {
+        this.aggregatorFactory = aggregatorFactory;
+    }
+
     /**
      * Генерирует статистику случайных чисел за один проход (оптимизированная версия).
      *
@@ -38,53 +63,187 @@ public class RandomNumberGenerator {
      * @return статистика
      */
     public Mono<RandomStatisticsDto> generateStatistics(long count, long min, long max) {
-        return Mono.fromCallable(() -> {
-            log.debug("Starting optimized generation of {} random numbers in range [{}, {}]", count, min, max);
-            long startTime = System.currentTimeMillis();
-
-            // ОПТИМИЗАЦИЯ 1: Создаём агрегатор для single-pass вычислений
-            RandomStatsAggregator aggregator = new RandomStatsAggregator(min, max);
-
-            // ОПТИМИЗАЦИЯ 2: ThreadLocalRandom - нет синхронизации, нет аллокаций
-            ThreadLocalRandom random = ThreadLocalRandom.current();
-
-            // ОПТИМИЗАЦИЯ 3: Single-pass - генерируем и агрегируем за один цикл
-            // Не храним числа в памяти - только статистика
-            for (long i = 0; i < count; i++) {
-                // Генерация случайного числа в диапазоне [min, max)
-                long value = random.nextLong(min, max + 1);
-
-                // Добавляем к агрегатору - обновляет все метрики за O(1)
-                aggregator.add(value);
-            }
-
-            // Вычисляем финальные метрики
-            long actualMin = aggregator.getMin();
-            long actualMax = aggregator.getMax();
-            double mean = aggregator.getMean();
-            double stdDev = aggregator.getStandardDeviation();
-            Map<String, Long> histogram = aggregator.getHistogramMap();
-
-            long processingTime = System.currentTimeMillis() - startTime;
-
-            log.info("Generated {} numbers in {}ms (optimized): min={}, max={}, mean={}, stdDev={}",
-                    count, processingTime, actualMin, actualMax, mean, stdDev);
-
-            aggregator.logStatistics();
-
-            // Построение результата
-            return RandomStatisticsDto.builder()
-                    .count(count)
-                    .min(actualMin)
-                    .max(actualMax)
-                    .mean(mean)
-                    .standardDeviation(stdDev)
-                    .histogram(histogram)
-                    .generatedAt(System.currentTimeMillis())
-                    .processingTimeMs(processingTime)
-                    .build();
-
-        }).subscribeOn(Schedulers.boundedElastic());
+        return generateStatistics(count, min, max, aggregatorFactory.isSketchesEnabled());
+    }
+
+    /**
+     * Генерирует статистику за один проход, опционально со скетчами distinct/top-k.
+     *
+     * @param count количество чисел для генерации
+     * @param min минимальное значение диапазона
+     * @param max максимальное значение диапазона
+     * @param sketches вести ли HyperLogLog и SpaceSaving
+     * @return статистика
+     */
+    public Mono<RandomStatisticsDto> generateStatistics(long count, long min, long max, boolean sketches) {
+        return Mono.deferContextual(context -> {
+            ServerTiming timing = ServerTiming.from(context);
+            long submittedNanos = System.nanoTime();
+
+            return Mono.fromCallable(() -> {
+                long startNanos = timing.since(ServerTiming.Stage.SCHEDULE, submittedNanos);
+                log.debug("Starting optimized generation of {} random numbers in range [{}, {}], sketches={}",
+                        count, min, max, sketches);
+                GenerationEvent event = new GenerationEvent();
+                event.begin();
+
+                // ОПТИМИЗАЦИЯ 1: Создаём агрегатор для single-pass вычислений
+                RandomStatsAggregator aggregator = aggregatorFactory.create(min, max, sketches);
+
+                // ОПТИМИЗАЦИЯ 2: ThreadLocalRandom - нет синхронизации, нет аллокаций
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                // ОПТИМИЗАЦИЯ 3: Single-pass - генерируем и агрегируем за один цикл
+                // Не храним числа в памяти - только статистика
+                for (long i = 0; i < count; i++) {
+                    // Генерация случайного числа в диапазоне [min, max)
+                    long value = random.nextLong(min, max + 1);
+
+                    // Добавляем к агрегатору - обновляет все метрики за O(1)
+                    aggregator.add(value);
+                }
+
+                // Вычисляем финальные метрики
+                long actualMin = aggregator.getMin();
+                long actualMax = aggregator.getMax();
+                double mean = aggregator.getMean();
+                double stdDev = aggregator.getStandardDeviation();
+                Map<String, Long> histogram = aggregator.getHistogramMap();
+
+                long elapsedNanos = System.nanoTime() - startNanos;
+                long processingTime = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+                timing.add(ServerTiming.Stage.GENERATE, elapsedNanos);
+                commitGeneration(event, count, min, max, false, sketches, elapsedNanos);
+
+                log.info("Generated {} numbers in {}ms (optimized): min={}, max={}, mean={}, stdDev={}",
+                        count, processingTime, actualMin, actualMax, mean, stdDev);
+
+                aggregator.logStatistics();
+
+                // Построение результата
+                return RandomStatisticsDto.builder()
+                        .count(count)
+                        .min(actualMin)
+                        .max(actualMax)
+                        .mean(mean)
+                        .standardDeviation(stdDev)
+                        .histogram(histogram)
+                        .distinctCount(aggregator.getDistinctCount())
+                        .topValues(aggregator.getTopValuesMap(aggregatorFactory.getTopK()))
+                        .topValuesMaxError(aggregator.getTopValuesMaxError(aggregatorFactory.getTopK()))
+                        .generatedAt(System.currentTimeMillis())
+                        .processingTimeMs(processingTime)
+                        .build();
+            }).subscribeOn(Schedulers.boundedElastic());
+        });
+    }
+
+    /**
+     * Воспроизводимая генерация статистики: результат определяется только (seed, count, min, max).
+     *
+     * Поток значений делится на блоки по BLOCK_SIZE чисел. Блок i всегда получает один и тот же
+     * подпоток - генератор, сдвинутый jump() i раз от seed. Чанк - группа соседних блоков,
+     * обрабатываемая одним потоком boundedElastic. Частичные агрегаты блоков сливаются строго
+     * в порядке номеров блоков, поэтому итоговый RandomStatisticsDto бит-в-бит совпадает
+     * при любых parallelism и blocksPerChunk (включая последовательный режим parallelism=1).
+     *
+     * @param count количество чисел для генерации
+     * @param min минимальное значение диапазона
+     * @param max максимальное значение диапазона
+     * @param seed зерно генератора
+     * @param parallelism число чанков, обрабатываемых одновременно
+     * @param blocksPerChunk размер чанка в блоках
+     * @param sketches вести ли HyperLogLog и SpaceSaving
+     * @return статистика
+     */
+    public Mono<RandomStatisticsDto> generateStatistics(long count, long min, long max,
+                                                        long seed, int parallelism, int blocksPerChunk,
+                                                        boolean sketches) {
+        return Mono.deferContextual(context -> {
+            log.debug("Starting seeded generation of {} random numbers in range [{}, {}]: seed={}, parallelism={}, blocksPerChunk={}",
+                    count, min, max, seed, parallelism, blocksPerChunk);
+            ServerTiming timing = ServerTiming.from(context);
+            long startNanos = System.nanoTime();
+            // Старт первого чанка: до него - ожидание потока (schedule), после - генерация (generate)
+            long[] firstChunkStart = new long[1];
+            GenerationEvent event = new GenerationEvent();
+            event.begin();
+
+            RandomBlocks blocks = RandomBlocks.seeded(seed, count, min, max);
+            int blockCount = blocks.blockCount();
+            int chunkCount = (blockCount + blocksPerChunk - 1) / blocksPerChunk;
+
+            return Flux.range(0, chunkCount)
+                    .flatMapSequential(chunk -> Mono.fromCallable(() -> {
+                                if (chunk == 0) {
+                                    firstChunkStart[0] = timing.since(ServerTiming.Stage.SCHEDULE, startNanos);
+                                }
+                                int firstBlock = chunk * blocksPerChunk;
+                                int lastBlock = Math.min(blockCount, firstBlock + blocksPerChunk);
+                                return generateBlocks(blocks, firstBlock, lastBlock, min, max, sketches);
+                            }).subscribeOn(Schedulers.boundedElastic()),
+                            parallelism)
+                    .concatMapIterable(partials -> partials)
+                    .reduceWith(() -> aggregatorFactory.create(min, max, sketches), RandomStatsAggregator::merge)
+                    .map(aggregator -> {
+                        long endNanos = System.nanoTime();
+                        long elapsedNanos = endNanos - startNanos;
+                        long processingTime = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+                        timing.add(ServerTiming.Stage.GENERATE, endNanos - firstChunkStart[0]);
+                        commitGeneration(event, count, min, max, true, sketches, elapsedNanos);
+
+                        log.info("Generated {} numbers in {}ms (seeded, {} blocks in {} chunks): min={}, max={}, mean={}, stdDev={}",
+                                count, processingTime, blockCount, chunkCount,
+                                aggregator.getMin(), aggregator.getMax(), aggregator.getMean(), aggregator.getStandardDeviation());
+
+                        return RandomStatisticsDto.builder()
+                                .count(count)
+                                .min(aggregator.getMin())
+                                .max(aggregator.getMax())
+                                .mean(aggregator.getMean())
+                                .standardDeviation(aggregator.getStandardDeviation())
+                                .histogram(aggregator.getHistogramMap())
+                                .distinctCount(aggregator.getDistinctCount())
+                                .topValues(aggregator.getTopValuesMap(aggregatorFactory.getTopK()))
+                                .topValuesMaxError(aggregator.getTopValuesMaxError(aggregatorFactory.getTopK()))
+                                .seed(seed)
+                                .generatedAt(System.currentTimeMillis())
+                                .processingTimeMs(processingTime)
+                                .build();
+                    });
+        });
+    }
+
+    /**
+     * Завершает JFR-событие генерации; поля заполняются, только если событие будет записано.
+     */
+    private static void commitGeneration(GenerationEvent event, long count, long min, long max,
+                                         boolean seeded, boolean sketches, long elapsedNanos) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.count = count;
+            event.min = min;
+            event.max = max;
+            event.seeded = seeded;
+            event.sketches = sketches;
+            event.valuesPerSecond = count * 1_000_000_000.0 / Math.max(1, elapsedNanos);
+            event.commit();
+        }
+    }
+
+    /**
+     * Генерирует блоки [firstBlock, lastBlock), по отдельному агрегатору на блок.
+     */
+    private List<RandomStatsAggregator> generateBlocks(RandomBlocks blocks, int firstBlock, int lastBlock,
+                                                       long min, long max, boolean sketches) {
+        List<RandomStatsAggregator> partials = new ArrayList<>(lastBlock - firstBlock);
+
+        for (int block = firstBlock; block < lastBlock; block++) {
+            RandomStatsAggregator aggregator = aggregatorFactory.create(min, max, sketches);
+            blocks.generate(block, aggregator, null);
+            partials.add(aggregator);
+        }
+        return partials;
     }
 
     /**
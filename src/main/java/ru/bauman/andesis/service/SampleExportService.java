@@ -0,0 +1,443 @@
+package ru.bauman.andesis.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.bauman.andesis.dto.RandomStatisticsDto;
+import ru.bauman.andesis.dto.SampleExportDto;
+import ru.bauman.andesis.exception.ExportNotFoundException;
+import ru.bauman.andesis.exception.InvalidParametersException;
+import ru.bauman.andesis.exception.QuotaExceededException;
+import ru.bauman.andesis.util.RandomStatsAggregator;
+import ru.bauman.andesis.util.ServerTiming;
+import ru.bauman.andesis.util.ValidationUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Экспорт сгенерированной выборки в файл вместе со статистикой по ней.
+ *
+ * Значения генерируются теми же блоками RandomBlocks, что и в seeded-генерации: блок кодируется в direct
+ * ByteBuffer и одним FileChannel.write уходит во временный файл, в том же проходе значения добавляются
+ * в агрегатор. Поэтому при заданном seed файл и статистика совпадают с /api/random/statistics?seed=...
+ * при тех же count/min/max.
+ *
+ * Каталог у каждого экземпляра свой (по умолчанию с портом в имени): при старте из него удаляются
+ * файлы предыдущего запуска, и Сервис A с Сервисом B на одном хосте не удаляют файлы друг друга.
+ * Файл живёт app.export.ttl, затем удаляется фоновой задачей. Скачивание закрепляет экспорт (acquire):
+ * DELETE и TTL сразу убирают его из реестра, а файл удаляется, когда закончится последнее скачивание.
+ * Суммарный размер файлов ограничен
+ * app.export.max-total-size-mb: место резервируется по худшему случаю до начала записи, при нехватке
+ * запрос отклоняется с QuotaExceededException (429).
+ */
+@Slf4j
+@Service
+public class SampleExportService {
+
+    private static final String FILE_PREFIX = "andesis-export-";
+    private static final String FILE_SUFFIX = ".bin";
+
+    public enum Format {
+        /**
+         * Сырые int64 little-endian, 8 байт на значение (совместим с /api/statistics/ingest).
+         */
+        INT64_LE("int64", Long.BYTES),
+        /**
+         * Разность с предыдущим значением, zigzag + LEB128 varint: 1-10 байт на значение.
+         */
+        DELTA_VARINT("varint", 10);
+
+        private final String label;
+        private final int maxBytesPerValue;
+
+        Format(String label, int maxBytesPerValue) {
+            this.label = label;
+            this.maxBytesPerValue = maxBytesPerValue;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.label.equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new InvalidParametersException("Unknown export format '" + name + "' (expected int64 or varint)");
+        }
+    }
+
+    /**
+     * Готовый файл экспорта.
+     */
+    public record ExportFile(String id, Path path, Format format, long count, long sizeBytes,
+                             long expiresAtNanos, long expiresAt) {
+    }
+
+    /**
+     * Экспорт, закреплённый на время скачивания: пока lease не закрыт, файл не удаляется.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final Entry entry;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public ExportFile file() {
+            return entry.file;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(entry);
+            }
+        }
+    }
+
+    /**
+     * Запись реестра. Одна ссылка принадлежит реестру (снимается при DELETE или по TTL),
+     * по одной - каждому скачиванию; файл удаляется вместе с последней ссылкой.
+     */
+    private static final class Entry {
+
+        private final ExportFile file;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Entry(ExportFile file) {
+            this.file = file;
+        }
+
+        /**
+         * Добавляет ссылку, если файл ещё не удалён.
+         */
+        boolean retain() {
+            int current;
+            do {
+                current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(current, current + 1));
+            return true;
+        }
+    }
+
+    private final AggregatorFactory aggregatorFactory;
+    private final FairScheduler fairScheduler;
+
+    private final Map<String, Entry> exports = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    // Буферы блоков переиспользуются: их не больше, чем одновременных экспортов
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    private Disposable cleanupTask;
+
+    @Value("${app.export.directory:${java.io.tmpdir}/andesis-export-${server.port:8080}}")
+    private String directoryName;
+
+    @Value("${app.export.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${app.export.max-total-size-mb:1024}")
+    private long maxTotalSizeMb;
+
+    @Value("${app.export.cleanup-interval:30s}")
+    private Duration cleanupInterval;
+
+    private Path directory;
+
+    public SampleExportService(AggregatorFactory aggregatorFactory, FairScheduler fairScheduler) {
+        this.aggregatorFactory = aggregatorFactory;
+        this.fairScheduler = fairScheduler;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = Files.createDirectories(Paths.get(directoryName));
+
+        // Файлы предыдущего запуска этого экземпляра не зарегистрированы и не учтены в квоте - удаляем
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+
+        cleanupTask = Flux.interval(cleanupInterval, cleanupInterval, Schedulers.boundedElastic())
+                .subscribe(tick -> removeExpired());
+
+        log.info("Sample export: directory={}, ttl={}, maxTotalSize={}MB", directory, ttl, maxTotalSizeMb);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (cleanupTask != null) {
+            cleanupTask.dispose();
+        }
+        exports.keySet().forEach(this::delete);
+    }
+
+    /**
+     * Генерирует выборку в файл и считает по ней статистику.
+     *
+     * @param count количество чисел
+     * @param min минимальное значение
+     * @param max максимальное значение
+     * @param seed зерно генератора, null - невоспроизводимая генерация
+     * @param format формат файла
+     * @param sketches вести ли скетчи distinct/top-k, null - app.sketches.enabled
+     * @return описание экспорта со статистикой
+     */
+    public Mono<SampleExportDto> export(long count, long min, long max, Long seed, Format format, Boolean sketches) {
+        return Mono.deferContextual(context -> {
+            log.info("Starting sample export: count={}, range=[{}, {}], seed={}, format={}",
+                    count, min, max, seed, format.label);
+
+            ServerTiming timing = ServerTiming.from(context);
+            long validateStart = System.nanoTime();
+            ValidationUtil.validateCount(count);
+            ValidationUtil.validateRange(min, max);
+            timing.since(ServerTiming.Stage.VALIDATE, validateStart);
+
+            boolean actualSketches = sketches != null ? sketches : aggregatorFactory.isSketchesEnabled();
+
+            return fairScheduler.submit(count,
+                            Mono.fromCallable(() -> write(count, min, max, seed, format, actualSketches, timing))
+                                    .subscribeOn(Schedulers.boundedElastic()))
+                    .doOnSuccess(export -> timing.markResultReady());
+        });
+    }
+
+    /**
+     * Закрепляет файл экспорта на время скачивания. Lease нужно закрыть, когда ответ записан
+     * или отменён, иначе файл останется на диске до перезапуска.
+     *
+     * @param id идентификатор экспорта
+     * @return закреплённый файл
+     */
+    public Lease acquire(String id) {
+        Entry entry = exports.get(id);
+        if (entry == null || System.nanoTime() - entry.file.expiresAtNanos() > 0 || !entry.retain()) {
+            throw new ExportNotFoundException("Export '" + id + "' does not exist or has expired");
+        }
+        return new Lease(entry);
+    }
+
+    /**
+     * Удаляет экспорт до истечения TTL. Новые скачивания сразу получают 404, а файл удаляется,
+     * когда закончатся уже начатые.
+     *
+     * @param id идентификатор экспорта
+     * @return был ли такой экспорт
+     */
+    public boolean delete(String id) {
+        Entry entry = exports.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        release(entry);
+        return true;
+    }
+
+    private void release(Entry entry) {
+        if (entry.references.decrementAndGet() != 0) {
+            return;
+        }
+
+        ExportFile export = entry.file;
+        try {
+            Files.deleteIfExists(export.path());
+        } catch (IOException e) {
+            log.warn("Could not delete export file {}: {}", export.path(), e.getMessage());
+        }
+        // Место освобождается только вместе с файлом: пока он отдаётся, он занимает диск
+        usedBytes.addAndGet(-export.sizeBytes());
+    }
+
+    private void removeExpired() {
+        long now = System.nanoTime();
+        exports.values().stream()
+                .map(entry -> entry.file)
+                .filter(export -> now - export.expiresAtNanos() > 0)
+                .map(ExportFile::id)
+                .toList()
+                .forEach(id -> {
+                    delete(id);
+                    log.debug("Removed expired export {}", id);
+                });
+    }
+
+    private SampleExportDto write(long count, long min, long max, Long seed, Format format,
+                                  boolean sketches, ServerTiming timing) throws IOException {
+        long reserved = count * format.maxBytesPerValue;
+        reserve(reserved);
+
+        String id = UUID.randomUUID().toString();
+        Path path = directory.resolve(FILE_PREFIX + id + FILE_SUFFIX);
+        ByteBuffer buffer = acquireBuffer();
+        long startNanos = System.nanoTime();
+        long sizeBytes;
+        RandomStatsAggregator aggregator = aggregatorFactory.create(min, max, sketches);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            RandomBlocks blocks = seed != null
+                    ? RandomBlocks.seeded(seed, count, min, max)
+                    : RandomBlocks.unseeded(count, min, max);
+            BlockEncoder encoder = new BlockEncoder(buffer, format == Format.DELTA_VARINT);
+
+            for (int block = 0; block < blocks.blockCount(); block++) {
+                // Для seeded - отдельный агрегат на блок и слияние по порядку, как в seeded-генерации
+                RandomStatsAggregator target = blocks.isSeeded()
+                        ? aggregatorFactory.create(min, max, sketches)
+                        : aggregator;
+
+                buffer.clear();
+                blocks.generate(block, target, encoder);
+
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (target != aggregator) {
+                    aggregator.merge(target);
+                }
+            }
+            sizeBytes = channel.size();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            usedBytes.addAndGet(-reserved);
+            throw e;
+        } finally {
+            buffers.offer(buffer);
+        }
+
+        // Резерв по худшему случаю заменяется фактическим размером
+        usedBytes.addAndGet(sizeBytes - reserved);
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long processingTime = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        timing.add(ServerTiming.Stage.GENERATE, elapsedNanos);
+
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        ExportFile export = new ExportFile(id, path, format, count, sizeBytes,
+                System.nanoTime() + ttl.toNanos(), expiresAt);
+        exports.put(id, new Entry(export));
+
+        log.info("Exported {} values to {} ({} bytes, {}) in {}ms: {} GB/s",
+                count, path.getFileName(), sizeBytes, format.label, processingTime,
+                String.format("%.2f", sizeBytes / (double) Math.max(1, elapsedNanos)));
+
+        RandomStatisticsDto statistics = RandomStatisticsDto.builder()
+                .count(aggregator.getCount())
+                .min(aggregator.getMin())
+                .max(aggregator.getMax())
+                .mean(aggregator.getMean())
+                .standardDeviation(aggregator.getStandardDeviation())
+                .histogram(aggregator.getHistogramMap())
+                .distinctCount(aggregator.getDistinctCount())
+                .topValues(aggregator.getTopValuesMap(aggregatorFactory.getTopK()))
+                .topValuesMaxError(aggregator.getTopValuesMaxError(aggregatorFactory.getTopK()))
+                .seed(seed)
+                .generatedAt(System.currentTimeMillis())
+                .processingTimeMs(processingTime)
+                .build();
+
+        return SampleExportDto.builder()
+                .id(id)
+                .format(format.label)
+                .sizeBytes(sizeBytes)
+                .downloadUrl("/api/random/export/" + id)
+                .expiresAt(expiresAt)
+                .statistics(statistics)
+                .build();
+    }
+
+    private void reserve(long bytes) {
+        long limit = maxTotalSizeMb * 1024 * 1024;
+        long used;
+        do {
+            used = usedBytes.get();
+            if (used + bytes > limit) {
+                throw new QuotaExceededException("Export disk quota exceeded: " + used + " of " + limit
+                        + " bytes in use, " + bytes + " bytes requested");
+            }
+        } while (!usedBytes.compareAndSet(used, used + bytes));
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(RandomNumberGenerator.BLOCK_SIZE * Format.DELTA_VARINT.maxBytesPerValue)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return buffer;
+    }
+
+    /**
+     * Кодирует значения блока в буфер; предыдущее значение для varint переходит между блоками.
+     */
+    private static final class BlockEncoder implements LongConsumer {
+
+        private final ByteBuffer buffer;
+        private final boolean varint;
+        private long previous;
+
+        BlockEncoder(ByteBuffer buffer, boolean varint) {
+            this.buffer = buffer;
+            this.varint = varint;
+        }
+
+        @Override
+        public void accept(long value) {
+            if (varint) {
+                putVarint(buffer, value - previous);
+                previous = value;
+            } else {
+                buffer.putLong(value);
+            }
+        }
+    }
+
+    /**
+     * Zigzag (малые по модулю разности - малые числа) и LEB128: по 7 бит в байте, старший бит - продолжение.
+     */
+    private static void putVarint(ByteBuffer buffer, long delta) {
+        long zigzag = (delta << 1) ^ (delta >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+}
@@ -1,11 +1,17 @@
 package ru.bauman.andesis.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 import ru.bauman.andesis.dto.RandomStatisticsDto;
+import ru.bauman.andesis.filter.TenantFilter;
+import ru.bauman.andesis.util.ServerTiming;
 import ru.bauman.andesis.util.ValidationUtil;
 
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Упрощённый калькулятор статистики.
  *
@@ -17,9 +23,26 @@ import ru.bauman.andesis.util.ValidationUtil;
 public class StatisticsCalculator {
 
     private final RandomNumberGenerator numberGenerator;
+    private final FairScheduler fairScheduler;
+    private final AggregatorFactory aggregatorFactory;
+
+    @Value("${app.random.parallelism:4}")
+    private int defaultParallelism;
+
+    @Value("${app.random.blocks-per-chunk:8}")
+    private int defaultBlocksPerChunk;
+
+    /**
+     * Доля seeded-запросов, которые повторно считаются последовательно для сверки (0 - выключено).
+     */
+    @Value("${app.random.canary-rate:0.0}")
+    private double canaryRate;
 
-    public StatisticsCalculator(RandomNumberGenerator numberGenerator) {
+    public StatisticsCalculator(RandomNumberGenerator numberGenerator, FairScheduler fairScheduler,
+                                AggregatorFactory aggregatorFactory) {
         this.numberGenerator = numberGenerator;
+        this.fairScheduler = fairScheduler;
+        this.aggregatorFactory = aggregatorFactory;
     }
 
     /**
@@ -34,12 +57,29 @@ public class StatisticsCalculator {
      * @return статистика
      */
     public Mono<RandomStatisticsDto> calculateStatistics(long count, long min, long max) {
-        return Mono.defer(() -> {
-            log.info("Starting optimized statistics calculation for count={}, range=[{}, {}]", count, min, max);
+        return calculateStatistics(count, min, max, aggregatorFactory.isSketchesEnabled());
+    }
+
+    /**
+     * Вычисляет статистику случайных чисел, опционально со скетчами distinct/top-k.
+     *
+     * @param count количество чисел
+     * @param min минимальное значение
+     * @param max максимальное значение
+     * @param sketches вести ли HyperLogLog и SpaceSaving
+     * @return статистика
+     */
+    public Mono<RandomStatisticsDto> calculateStatistics(long count, long min, long max, boolean sketches) {
+        return Mono.deferContextual(context -> {
+            log.info("Starting optimized statistics calculation for count={}, range=[{}, {}], sketches={}",
+                    count, min, max, sketches);
 
             // Валидация параметров
+            ServerTiming timing = ServerTiming.from(context);
+            long validateStart = System.nanoTime();
             ValidationUtil.validateCount(count);
             ValidationUtil.validateRange(min, max);
+            timing.since(ServerTiming.Stage.VALIDATE, validateStart);
 
             // ОПТИМИЗАЦИЯ: Прямой вызов оптимизированного метода
             // Вместо:
@@ -50,11 +90,98 @@ public class StatisticsCalculator {
             // - findMax (проход 4)
             // - generateHistogram (проход 5 + сортировка)
             // Теперь: generateStatistics (один проход, без ArrayList)
+            // Запуск - через справедливую очередь арендатора, стоимость = count
 
-            return numberGenerator.generateStatistics(count, min, max)
-                    .doOnSuccess(dto -> log.info("Optimized statistics calculation completed: count={}, mean={}, stdDev={}, time={}ms",
-                            dto.getCount(), dto.getMean(), dto.getStandardDeviation(), dto.getProcessingTimeMs()))
+            return fairScheduler.submit(count, numberGenerator.generateStatistics(count, min, max, sketches))
+                    .doOnSuccess(dto -> {
+                        timing.markResultReady();
+                        log.info("Optimized statistics calculation completed: count={}, mean={}, stdDev={}, time={}ms",
+                                dto.getCount(), dto.getMean(), dto.getStandardDeviation(), dto.getProcessingTimeMs());
+                    })
                     .doOnError(e -> log.error("Error during statistics calculation", e));
         });
     }
+
+    /**
+     * Вычисляет статистику; при заданном seed - воспроизводимо и параллельно.
+     *
+     * @param count количество чисел
+     * @param min минимальное значение
+     * @param max максимальное значение
+     * @param seed зерно генератора, null - обычная невоспроизводимая генерация
+     * @param parallelism число параллельных чанков, null - app.random.parallelism
+     * @param blocksPerChunk размер чанка в блоках, null - app.random.blocks-per-chunk
+     * @param sketches вести ли скетчи distinct/top-k, null - app.sketches.enabled
+     * @return статистика
+     */
+    public Mono<RandomStatisticsDto> calculateStatistics(long count, long min, long max,
+                                                         Long seed, Integer parallelism, Integer blocksPerChunk,
+                                                         Boolean sketches) {
+        boolean actualSketches = sketches != null ? sketches : aggregatorFactory.isSketchesEnabled();
+        if (seed == null) {
+            return calculateStatistics(count, min, max, actualSketches);
+        }
+
+        return Mono.deferContextual(context -> {
+            int actualParallelism = parallelism != null ? parallelism : defaultParallelism;
+            int actualBlocksPerChunk = blocksPerChunk != null ? blocksPerChunk : defaultBlocksPerChunk;
+
+            log.info("Starting seeded statistics calculation for count={}, range=[{}, {}], seed={}, parallelism={}, blocksPerChunk={}",
+                    count, min, max, seed, actualParallelism, actualBlocksPerChunk);
+
+            ServerTiming timing = ServerTiming.from(context);
+            long validateStart = System.nanoTime();
+            ValidationUtil.validateCount(count);
+            ValidationUtil.validateRange(min, max);
+            ValidationUtil.validateParallelism(actualParallelism);
+            ValidationUtil.validateBlocksPerChunk(actualBlocksPerChunk);
+            timing.since(ServerTiming.Stage.VALIDATE, validateStart);
+
+            return fairScheduler.submit(count,
+                            numberGenerator.generateStatistics(count, min, max, seed, actualParallelism, actualBlocksPerChunk,
+                                    actualSketches))
+                    .doOnSuccess(dto -> {
+                        timing.markResultReady();
+                        log.info("Seeded statistics calculation completed: count={}, mean={}, stdDev={}, time={}ms",
+                                dto.getCount(), dto.getMean(), dto.getStandardDeviation(), dto.getProcessingTimeMs());
+                        if (canaryRate > 0 && ThreadLocalRandom.current().nextDouble() < canaryRate) {
+                            runCanary(dto, count, min, max, seed, actualSketches);
+                        }
+                    })
+                    .doOnError(e -> log.error("Error during seeded statistics calculation", e));
+        });
+    }
+
+    /**
+     * Асинхронно пересчитывает seeded-запрос последовательно (1 поток, чанк = 1 блок)
+     * и сверяет результат с параллельным. Ответ клиенту при этом не задерживается.
+     * Пересчёт ставится в очередь служебного арендатора TenantFilter.CANARY_TENANT с квотами
+     * app.fair-queue.tenants.canary, а не выполняется в обход лимитов; при их превышении сверка пропускается.
+     */
+    private void runCanary(RandomStatisticsDto parallel, long count, long min, long max, long seed, boolean sketches) {
+        fairScheduler.submit(count, numberGenerator.generateStatistics(count, min, max, seed, 1, 1, sketches))
+                .contextWrite(context -> context.put(TenantFilter.TENANT_CONTEXT_KEY, TenantFilter.CANARY_TENANT))
+                .subscribe(
+                        sequential -> {
+                            if (sameStatistics(parallel, sequential)) {
+                                log.debug("Canary check passed for seed={}, count={}", seed, count);
+                            } else {
+                                log.error("Canary check FAILED for seed={}, count={}, range=[{}, {}]: parallel={}, sequential={}",
+                                        seed, count, min, max, parallel, sequential);
+                            }
+                        },
+                        e -> log.warn("Canary check could not run for seed={}: {}", seed, e.getMessage()));
+    }
+
+    private static boolean sameStatistics(RandomStatisticsDto a, RandomStatisticsDto b) {
+        return a.getCount() == b.getCount()
+                && a.getMin() == b.getMin()
+                && a.getMax() == b.getMax()
+                && Double.doubleToRawLongBits(a.getMean()) == Double.doubleToRawLongBits(b.getMean())
+                && Double.doubleToRawLongBits(a.getStandardDeviation()) == Double.doubleToRawLongBits(b.getStandardDeviation())
+                && Objects.equals(a.getHistogram(), b.getHistogram())
+                && Objects.equals(a.getDistinctCount(), b.getDistinctCount())
+                && Objects.equals(a.getTopValues(), b.getTopValues())
+                && Objects.equals(a.getTopValuesMaxError(), b.getTopValuesMaxError());
+    }
 }
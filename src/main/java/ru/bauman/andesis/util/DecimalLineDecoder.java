@@ -0,0 +1,82 @@
+package ru.bauman.andesis.util;
+
+import ru.bauman.andesis.exception.InvalidParametersException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Декодер десятичных чисел, по одному на строку (text/plain, разделитель \n, допускается \r\n).
+ *
+ * Число накапливается в long по байтам, как в Long.parseLong, но без создания String.
+ * Пустые строки пропускаются.
+ */
+public class DecimalLineDecoder extends StreamingNumberDecoder {
+
+    // Накопление ведётся в отрицательную сторону, чтобы Long.MIN_VALUE тоже помещался
+    private long accumulator = 0;
+    private boolean negative = false;
+    private boolean hasDigits = false;
+    private boolean hasSign = false;
+    private long line = 1;
+
+    public DecimalLineDecoder(RandomStatsAggregator aggregator) {
+        super(aggregator);
+    }
+
+    @Override
+    protected void decode(ByteBuffer buffer) {
+        for (int i = buffer.position(), limit = buffer.limit(); i < limit; i++) {
+            byte b = buffer.get(i);
+
+            if (b >= '0' && b <= '9') {
+                appendDigit(b - '0');
+            } else if (b == '\n') {
+                endLine();
+            } else if (b == '-' && !hasDigits && !hasSign) {
+                negative = true;
+                hasSign = true;
+            } else if (b == '+' && !hasDigits && !hasSign) {
+                hasSign = true;
+            } else if (b != '\r') {
+                throw new InvalidParametersException(
+                        "Unexpected character '" + (char) (b & 0xFF) + "' at line " + line);
+            }
+        }
+    }
+
+    @Override
+    public void finish() {
+        endLine();
+    }
+
+    private void appendDigit(int digit) {
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        if (accumulator < limit / 10) {
+            throw overflow();
+        }
+        accumulator *= 10;
+        if (accumulator < limit + digit) {
+            throw overflow();
+        }
+        accumulator -= digit;
+        hasDigits = true;
+    }
+
+    private void endLine() {
+        if (hasDigits) {
+            aggregator.add(negative ? accumulator : -accumulator);
+        } else if (hasSign) {
+            throw new InvalidParametersException("Sign without digits at line " + line);
+        }
+
+        accumulator = 0;
+        negative = false;
+        hasDigits = false;
+        hasSign = false;
+        line++;
+    }
+
+    private InvalidParametersException overflow() {
+        return new InvalidParametersException("Value does not fit into int64 at line " + line);
+    }
+}
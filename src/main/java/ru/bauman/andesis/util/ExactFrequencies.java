@@ -0,0 +1,133 @@
+package ru.bauman.andesis.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Точные частоты значений узкого диапазона [rangeMin, rangeMin + size) в массиве long[size].
+ *
+ * Диапазон известен до начала генерации, поэтому при небольшом max - min + 1 точный счёт дешевле
+ * SpaceSaving (инкремент по индексу вместо хэш-таблицы и кучи) и не даёт ошибки. Значения вне
+ * диапазона (возможны только при загрузке через ingest) считаются отдельным SpaceSaving, он создаётся
+ * при первом таком значении; их частоты - гарантированные нижние оценки, как у SpaceSaving.
+ */
+public class ExactFrequencies {
+
+    private final long rangeMin;
+    private final long[] counts;
+    private final int outOfRangeCapacity;
+
+    private SpaceSaving outOfRange;
+
+    /**
+     * @param rangeMin первое значение диапазона
+     * @param size число значений в диапазоне
+     * @param outOfRangeCapacity число счётчиков SpaceSaving для значений вне диапазона
+     */
+    public ExactFrequencies(long rangeMin, int size, int outOfRangeCapacity) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("ExactFrequencies size must be greater than 0");
+        }
+        this.rangeMin = rangeMin;
+        this.counts = new long[size];
+        this.outOfRangeCapacity = outOfRangeCapacity;
+    }
+
+    /**
+     * Учитывает одно вхождение значения.
+     *
+     * @param value значение
+     */
+    public void add(long value) {
+        // Беззнаковое сравнение отсекает и значения ниже rangeMin, и переполнение разности
+        long index = value - rangeMin;
+        if (Long.compareUnsigned(index, counts.length) < 0) {
+            counts[(int) index]++;
+        } else {
+            outOfRange().add(value);
+        }
+    }
+
+    /**
+     * Сливает частоты того же диапазона.
+     *
+     * @param other частоты
+     */
+    public void merge(ExactFrequencies other) {
+        if (other.rangeMin != rangeMin || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Cannot merge ExactFrequencies of different ranges");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        if (other.outOfRange != null) {
+            outOfRange().merge(other.outOfRange);
+        }
+    }
+
+    /**
+     * Возвращает top-k значений по убыванию частоты, при равенстве - по возрастанию значения.
+     *
+     * @param k сколько значений вернуть
+     * @return значение → частота (точная для значений диапазона)
+     */
+    public Map<String, Long> getTopValuesMap(int k) {
+        List<long[]> top = new ArrayList<>(k + 1);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                offer(top, k, rangeMin + i, counts[i]);
+            }
+        }
+        if (outOfRange != null) {
+            for (Map.Entry<String, Long> entry : outOfRange.getTopValuesMap(k).entrySet()) {
+                offer(top, k, Long.parseLong(entry.getKey()), entry.getValue());
+            }
+        }
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (long[] entry : top) {
+            result.put(String.valueOf(entry[0]), entry[1]);
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает верхнюю границу недосчёта частот из getTopValuesMap: 0, пока не было значений вне диапазона.
+     *
+     * @param k сколько значений вернуть
+     * @return максимальная ошибка
+     */
+    public long getTopValuesMaxError(int k) {
+        return outOfRange != null ? outOfRange.getTopValuesMaxError(k) : 0;
+    }
+
+    /**
+     * Вставка в отсортированный список из не более k пар {значение, частота}.
+     * Обход идёт не чаще раза на ответ, поэтому достаточно вставки за O(k).
+     */
+    private static void offer(List<long[]> top, int k, long value, long count) {
+        int position = top.size();
+        while (position > 0) {
+            long[] previous = top.get(position - 1);
+            if (previous[1] > count || (previous[1] == count && previous[0] < value)) {
+                break;
+            }
+            position--;
+        }
+        if (position < k) {
+            top.add(position, new long[]{value, count});
+            if (top.size() > k) {
+                top.remove(k);
+            }
+        }
+    }
+
+    private SpaceSaving outOfRange() {
+        if (outOfRange == null) {
+            outOfRange = new SpaceSaving(outOfRangeCapacity);
+        }
+        return outOfRange;
+    }
+}
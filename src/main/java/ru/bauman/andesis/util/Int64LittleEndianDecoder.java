@@ -0,0 +1,57 @@
+package ru.bauman.andesis.util;
+
+import ru.bauman.andesis.exception.InvalidParametersException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Декодер сырых int64 little-endian (application/octet-stream), 8 байт на значение.
+ *
+ * Целые значения читаются getLong() прямо из буфера; значение, разрезанное границей
+ * DataBuffer, собирается побайтно в partial.
+ */
+public class Int64LittleEndianDecoder extends StreamingNumberDecoder {
+
+    private long partial = 0;
+    private int partialBytes = 0;
+
+    public Int64LittleEndianDecoder(RandomStatsAggregator aggregator) {
+        super(aggregator);
+    }
+
+    @Override
+    protected void decode(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int position = view.position();
+        int limit = view.limit();
+
+        // Дочитываем значение, начатое в предыдущем буфере
+        while (partialBytes > 0 && position < limit) {
+            partial |= (view.get(position++) & 0xFFL) << (8 * partialBytes);
+            if (++partialBytes == Long.BYTES) {
+                aggregator.add(partial);
+                partial = 0;
+                partialBytes = 0;
+            }
+        }
+
+        for (; position + Long.BYTES <= limit; position += Long.BYTES) {
+            aggregator.add(view.getLong(position));
+        }
+
+        // Хвост короче 8 байт - начало следующего значения
+        while (position < limit) {
+            partial |= (view.get(position++) & 0xFFL) << (8 * partialBytes);
+            partialBytes++;
+        }
+    }
+
+    @Override
+    public void finish() {
+        if (partialBytes != 0) {
+            throw new InvalidParametersException("Body length is not a multiple of 8 bytes ("
+                    + partialBytes + " trailing bytes)");
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package ru.bauman.andesis.util;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import ru.bauman.andesis.jfr.AggregatorMergeEvent;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -11,6 +16,13 @@ import java.util.Map;
  * Эффективно вычисляет min, max, mean, stdDev, histogram без необходимости хранить все числа в памяти.
  *
  * ОПТИМИЗАЦИЯ: Вместо 6 отдельных проходов по данным, все метрики вычисляются за один проход.
+ *
+ * Опционально ведёт скетчи фиксированного размера: HyperLogLog (количество различных значений)
+ * и SpaceSaving (самые частые значения) - вместо точного HashSet<Long> на миллионы элементов.
+ * Если диапазон не шире exactTopValuesMaxRange, частые значения считаются точно (ExactFrequencies).
+ *
+ * Сумма хранится 128-битным числом (два long), поэтому не переполняется на любых значениях long
+ * (например, при загрузке [Long.MAX_VALUE, Long.MAX_VALUE]) и не зависит от порядка слияния.
  */
 @Slf4j
 @Getter
@@ -18,7 +30,11 @@ public class RandomStatsAggregator {
 
     private long min = Long.MAX_VALUE;
     private long max = Long.MIN_VALUE;
-    private long sum = 0;
+    // Сумма - 128-битное число со знаком: sumHigh * 2^64 + беззнаковый sumLow
+    @Getter(AccessLevel.NONE)
+    private long sumLow = 0;
+    @Getter(AccessLevel.NONE)
+    private long sumHigh = 0;
     private long count = 0;
     private double sumSquares = 0.0; // Для вычисления дисперсии
 
@@ -29,6 +45,14 @@ public class RandomStatsAggregator {
     private final long bucketSize;
     private final int[] histogram;
 
+    // Скетчи (null - выключены)
+    @Getter(AccessLevel.NONE)
+    private final HyperLogLog distinctSketch;
+    @Getter(AccessLevel.NONE)
+    private final SpaceSaving topValuesSketch;
+    @Getter(AccessLevel.NONE)
+    private final ExactFrequencies exactTopValues;
+
     /**
      * Создает агрегатор для указанного диапазона значений
      *
@@ -36,6 +60,20 @@ public class RandomStatsAggregator {
      * @param rangeMax максимальное значение диапазона
      */
     public RandomStatsAggregator(long rangeMin, long rangeMax) {
+        this(rangeMin, rangeMax, 0, 0, 0);
+    }
+
+    /**
+     * Создает агрегатор со скетчами
+     *
+     * @param rangeMin минимальное значение диапазона
+     * @param rangeMax максимальное значение диапазона
+     * @param hllPrecision точность HyperLogLog (2^precision байт), 0 - без оценки различных значений
+     * @param topValuesCapacity число счётчиков SpaceSaving, 0 - без top-k
+     * @param exactTopValuesMaxRange до какого числа значений в диапазоне top-k считается точно, 0 - всегда SpaceSaving
+     */
+    public RandomStatsAggregator(long rangeMin, long rangeMax, int hllPrecision, int topValuesCapacity,
+                                 int exactTopValuesMaxRange) {
         this.rangeMin = rangeMin;
         this.rangeMax = rangeMax;
 
@@ -45,6 +83,11 @@ public class RandomStatsAggregator {
         this.bucketSize = (range + bucketCount - 1) / bucketCount;
         this.histogram = new int[bucketCount];
 
+        this.distinctSketch = hllPrecision > 0 ? new HyperLogLog(hllPrecision) : null;
+        boolean exact = topValuesCapacity > 0 && range >= 0 && range < exactTopValuesMaxRange;
+        this.topValuesSketch = topValuesCapacity > 0 && !exact ? new SpaceSaving(topValuesCapacity) : null;
+        this.exactTopValues = exact ? new ExactFrequencies(rangeMin, (int) (range + 1), topValuesCapacity) : null;
+
         log.debug("Created RandomStatsAggregator: range=[{}, {}], buckets={}, bucketSize={}",
                 rangeMin, rangeMax, bucketCount, bucketSize);
     }
@@ -64,8 +107,8 @@ public class RandomStatsAggregator {
             max = value;
         }
 
-        // Обновление суммы для среднего
-        sum += value;
+        // Обновление суммы для среднего (со старшим словом вместо переполнения)
+        addToSum(value >> 63, value);
         count++;
 
         // Обновление суммы квадратов для стандартного отклонения
@@ -78,6 +121,86 @@ public class RandomStatsAggregator {
         if (bucketIndex >= 0 && bucketIndex < bucketCount) {
             histogram[bucketIndex]++;
         }
+
+        if (distinctSketch != null) {
+            distinctSketch.add(value);
+        }
+        if (topValuesSketch != null) {
+            topValuesSketch.add(value);
+        }
+        if (exactTopValues != null) {
+            exactTopValues.add(value);
+        }
+    }
+
+    /**
+     * Добавляет к агрегату частичный результат другого агрегатора того же диапазона.
+     * Для воспроизводимости (sumSquares - double) частичные агрегаты нужно сливать
+     * в одном и том же порядке, тогда результат бит-в-бит совпадает.
+     *
+     * @param other частичный агрегат
+     * @return этот агрегатор
+     */
+    public RandomStatsAggregator merge(RandomStatsAggregator other) {
+        if (other.rangeMin != rangeMin || other.rangeMax != rangeMax) {
+            throw new IllegalArgumentException("Cannot merge aggregators with different ranges: ["
+                    + rangeMin + ", " + rangeMax + "] and [" + other.rangeMin + ", " + other.rangeMax + "]");
+        }
+
+        AggregatorMergeEvent event = new AggregatorMergeEvent();
+        event.begin();
+
+        if (other.min < min) {
+            min = other.min;
+        }
+        if (other.max > max) {
+            max = other.max;
+        }
+        addToSum(other.sumHigh, other.sumLow);
+        count += other.count;
+        sumSquares += other.sumSquares;
+
+        for (int i = 0; i < bucketCount; i++) {
+            histogram[i] += other.histogram[i];
+        }
+
+        if (distinctSketch != null && other.distinctSketch != null) {
+            distinctSketch.merge(other.distinctSketch);
+        }
+        if (topValuesSketch != null && other.topValuesSketch != null) {
+            topValuesSketch.merge(other.topValuesSketch);
+        }
+        if (exactTopValues != null && other.exactTopValues != null) {
+            exactTopValues.merge(other.exactTopValues);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.mergedCount = other.count;
+            event.totalCount = count;
+            event.sketches = distinctSketch != null || topValuesSketch != null || exactTopValues != null;
+            event.commit();
+        }
+        return this;
+    }
+
+    /**
+     * Прибавляет к сумме 128-битное число high * 2^64 + low (low беззнаковый)
+     */
+    private void addToSum(long high, long low) {
+        long newLow = sumLow + low;
+        long carry = Long.compareUnsigned(newLow, sumLow) < 0 ? 1 : 0;
+        sumLow = newLow;
+        sumHigh += high + carry;
+    }
+
+    /**
+     * Возвращает точную сумму всех значений
+     *
+     * @return сумма
+     */
+    public BigInteger getSum() {
+        return BigInteger.valueOf(sumHigh).shiftLeft(64).add(new BigInteger(Long.toUnsignedString(sumLow)));
     }
 
     /**
@@ -102,7 +225,9 @@ public class RandomStatsAggregator {
     }
 
     /**
-     * Возвращает среднее значение
+     * Возвращает среднее значение.
+     * Пока сумма помещается в long, считается как раньше ((double) sum / count),
+     * иначе - делением BigDecimal.
      *
      * @return среднее значение
      */
@@ -110,7 +235,10 @@ public class RandomStatsAggregator {
         if (count == 0) {
             return 0.0;
         }
-        return (double) sum / count;
+        if (sumHigh == (sumLow >> 63)) {
+            return (double) sumLow / count;
+        }
+        return new BigDecimal(getSum()).divide(BigDecimal.valueOf(count), MathContext.DECIMAL64).doubleValue();
     }
 
     /**
@@ -155,6 +283,41 @@ public class RandomStatsAggregator {
         return histogramMap;
     }
 
+    /**
+     * Возвращает оценку количества различных значений
+     *
+     * @return оценка HyperLogLog или null, если скетч выключен
+     */
+    public Long getDistinctCount() {
+        return distinctSketch != null ? distinctSketch.estimate() : null;
+    }
+
+    /**
+     * Возвращает самые частые значения
+     *
+     * @param k сколько значений вернуть
+     * @return значение → гарантированная частота или null, если скетч выключен
+     */
+    public Map<String, Long> getTopValuesMap(int k) {
+        if (exactTopValues != null) {
+            return exactTopValues.getTopValuesMap(k);
+        }
+        return topValuesSketch != null ? topValuesSketch.getTopValuesMap(k) : null;
+    }
+
+    /**
+     * Возвращает верхнюю границу недосчёта частот из getTopValuesMap
+     *
+     * @param k сколько значений вернуть
+     * @return максимальная ошибка SpaceSaving или null, если скетч выключен
+     */
+    public Long getTopValuesMaxError(int k) {
+        if (exactTopValues != null) {
+            return exactTopValues.getTopValuesMaxError(k);
+        }
+        return topValuesSketch != null ? topValuesSketch.getTopValuesMaxError(k) : null;
+    }
+
     /**
      * Возвращает общее количество обработанных чисел
      *
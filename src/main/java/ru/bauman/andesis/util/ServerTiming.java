@@ -0,0 +1,296 @@
+package ru.bauman.andesis.util;
+
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Длительности этапов одного запроса для заголовка Server-Timing.
+ *
+ * Один объект на запрос: этапы копятся в массиве long (наносекунды, System.nanoTime),
+ * строка заголовка собирается один раз перед отправкой ответа. Объект лежит в атрибутах
+ * exchange и в Reactor Context под CONTEXT_KEY; если его там нет (фоновые задачи, выключенный
+ * app.server-timing.enabled), from() возвращает DISABLED, и все вызовы ничего не делают.
+ *
+ * Этапы одного запроса выполняются последовательно (разные потоки связаны сигналами Reactor),
+ * поэтому поля не синхронизируются.
+ *
+ * Здесь же - идентификаторы трассировки W3C traceparent: trace id берётся из входящего заголовка
+ * или генерируется, span id - свой для каждого сервиса.
+ */
+public final class ServerTiming {
+
+    public static final String HEADER = "Server-Timing";
+    public static final String TRACEPARENT_HEADER = "traceparent";
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+    public static final String CONTEXT_KEY = "andesis.server-timing";
+
+    /**
+     * Пустой объект для вызовов вне HTTP-запроса.
+     */
+    public static final ServerTiming DISABLED = new ServerTiming();
+
+    public enum Stage {
+        VALIDATE("validate"),
+        QUEUE("queue"),
+        SCHEDULE("schedule"),
+        GENERATE("generate"),
+        INGEST("ingest"),
+        POOL("pool"),
+        NETWORK("network"),
+        RETRY("retry"),
+        ENCODE("encode");
+
+        private final String metricName;
+
+        Stage(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final boolean enabled;
+    private final long startNanos;
+    private final long[] durations;
+    private final String traceId;
+    private final String spanId;
+
+    private int retries;
+    private long resultReadyNanos;
+    private long attemptStartNanos;
+    private long connectedNanos;
+    private long attemptEndNanos;
+    private String upstream;
+
+    private ServerTiming() {
+        this.enabled = false;
+        this.startNanos = 0;
+        this.durations = null;
+        this.traceId = null;
+        this.spanId = null;
+    }
+
+    private ServerTiming(long startNanos, String traceId) {
+        this.enabled = true;
+        this.startNanos = startNanos;
+        this.durations = new long[STAGES.length];
+        this.traceId = traceId;
+        this.spanId = randomHex(1);
+    }
+
+    /**
+     * Начинает замер запроса.
+     *
+     * @param traceparent входящий заголовок traceparent или null
+     * @return новый объект
+     */
+    public static ServerTiming start(String traceparent) {
+        String traceId = parseTraceId(traceparent);
+        return new ServerTiming(System.nanoTime(), traceId != null ? traceId : randomHex(2));
+    }
+
+    public static ServerTiming from(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, DISABLED);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Добавляет длительность к этапу (повторные вызовы суммируются).
+     *
+     * @param stage этап
+     * @param nanos длительность в наносекундах
+     */
+    public void add(Stage stage, long nanos) {
+        if (enabled) {
+            durations[stage.ordinal()] += nanos;
+        }
+    }
+
+    /**
+     * Добавляет к этапу время от from до текущего момента.
+     *
+     * @param stage этап
+     * @param from начало этапа (System.nanoTime)
+     * @return текущий момент, чтобы следующий этап начинался без повторного вызова nanoTime
+     */
+    public long since(Stage stage, long from) {
+        long now = System.nanoTime();
+        add(stage, now - from);
+        return now;
+    }
+
+    /**
+     * Результат обработчика готов; всё до фиксации ответа считается кодированием (ENCODE).
+     */
+    public void markResultReady() {
+        if (enabled) {
+            resultReadyNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Начало попытки вызова Сервиса B: дальше ждём соединение из пула.
+     * Если попытка не первая, пауза backoff после предыдущей учитывается как RETRY.
+     */
+    public void markAttemptStart() {
+        if (enabled) {
+            attemptStartNanos = System.nanoTime();
+            connectedNanos = 0;
+            if (attemptEndNanos != 0) {
+                retries++;
+                durations[Stage.RETRY.ordinal()] += attemptStartNanos - attemptEndNanos;
+            }
+        }
+    }
+
+    /**
+     * Соединение получено из пула, запрос уходит в сеть (вызывается из HttpClient.doOnRequest).
+     */
+    public void markConnected() {
+        if (enabled && attemptStartNanos != 0) {
+            connectedNanos = System.nanoTime();
+            durations[Stage.POOL.ordinal()] += connectedNanos - attemptStartNanos;
+        }
+    }
+
+    /**
+     * Конец попытки вызова Сервиса B: время после получения соединения - сеть и обработка в B.
+     */
+    public void markAttemptEnd() {
+        if (enabled && attemptStartNanos != 0) {
+            attemptEndNanos = System.nanoTime();
+            durations[Stage.NETWORK.ordinal()] += attemptEndNanos - (connectedNanos != 0 ? connectedNanos : attemptStartNanos);
+            attemptStartNanos = 0;
+        }
+    }
+
+    /**
+     * Запоминает Server-Timing вышестоящего сервиса; его метрики выводятся с префиксом.
+     *
+     * @param header значение заголовка Server-Timing
+     * @param prefix префикс имён, например "b-"
+     */
+    public void setUpstream(String header, String prefix) {
+        if (!enabled || header == null || header.isEmpty()) {
+            return;
+        }
+
+        StringBuilder prefixed = new StringBuilder(header.length() + 16);
+        for (String metric : header.split(",")) {
+            String trimmed = metric.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (prefixed.length() > 0) {
+                prefixed.append(", ");
+            }
+            prefixed.append(prefix).append(trimmed);
+        }
+        upstream = prefixed.toString();
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * Заголовок traceparent для исходящего запроса: тот же trace id, родитель - span этого сервиса.
+     */
+    public String traceparent() {
+        return "00-" + traceId + "-" + spanId + "-01";
+    }
+
+    /**
+     * Собирает значение заголовка Server-Timing; ENCODE и total считаются на момент вызова.
+     *
+     * @return например "validate;dur=0.012, generate;dur=35.4, encode;dur=0.3, total;dur=36.1"
+     */
+    public String render() {
+        if (!enabled) {
+            return "";
+        }
+
+        long now = System.nanoTime();
+        if (resultReadyNanos != 0) {
+            durations[Stage.ENCODE.ordinal()] += now - resultReadyNanos;
+            resultReadyNanos = 0;
+        }
+
+        StringBuilder header = new StringBuilder(192);
+        for (Stage stage : STAGES) {
+            long nanos = durations[stage.ordinal()];
+            if (nanos == 0) {
+                continue;
+            }
+            appendMetric(header, stage.metricName, nanos);
+            if (stage == Stage.RETRY) {
+                // Количество повторов - в desc, длительность - суммарная пауза backoff
+                header.append(";desc=\"").append(retries).append('"');
+            }
+        }
+        appendMetric(header, "total", now - startNanos);
+
+        if (upstream != null) {
+            header.append(", ").append(upstream);
+        }
+        return header.toString();
+    }
+
+    /**
+     * dur - в миллисекундах с тремя знаками после запятой, без String.format.
+     */
+    private static void appendMetric(StringBuilder header, String name, long nanos) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        long micros = Math.max(0, nanos) / 1_000;
+        long fraction = micros % 1_000;
+        header.append(name).append(";dur=").append(micros / 1_000).append('.');
+        if (fraction < 100) {
+            header.append('0');
+        }
+        if (fraction < 10) {
+            header.append('0');
+        }
+        header.append(fraction);
+    }
+
+    /**
+     * Trace id из "00-<32 hex>-<16 hex>-<2 hex>"; null, если заголовок отсутствует или некорректен.
+     */
+    private static String parseTraceId(String traceparent) {
+        if (traceparent == null || traceparent.length() != 55
+                || traceparent.charAt(2) != '-' || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-') {
+            return null;
+        }
+
+        String traceId = traceparent.substring(3, 35);
+        boolean allZero = true;
+        for (int i = 0; i < traceId.length(); i++) {
+            char c = traceId.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return null;
+            }
+            allZero &= c == '0';
+        }
+        return allZero ? null : traceId;
+    }
+
+    private static String randomHex(int longs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] hex = new char[longs * 16];
+        for (int i = 0; i < longs; i++) {
+            long value = random.nextLong();
+            for (int j = 15; j >= 0; j--) {
+                hex[i * 16 + j] = HEX[(int) (value & 0xF)];
+                value >>>= 4;
+            }
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,286 @@
+package ru.bauman.andesis.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SpaceSaving - top-k наиболее частых значений в фиксированной памяти (capacity счётчиков).
+ *
+ * Каждое значение, частота которого больше count/capacity, гарантированно присутствует в скетче;
+ * счётчик завышает истинную частоту не более чем на error этого счётчика, поэтому наружу отдаётся
+ * гарантированная частота count - error и максимальная ошибка среди отданных значений.
+ *
+ * Частоты точны (error = 0), только если capacity не меньше числа различных значений. При широком
+ * диапазоне и почти равномерном распределении счётчики постоянно вытесняются, и ошибка порядка
+ * count/capacity сравнима с самими частотами - тогда top-k показателен лишь для заметно частых значений.
+ *
+ * Всё хранится в примитивных массивах без боксинга: счётчики (keys/counts/errors), min-куча
+ * по counts для поиска вытесняемого счётчика и хэш-таблица с открытой адресацией key → слот.
+ * Обновление - O(log capacity).
+ */
+public class SpaceSaving {
+
+    private final int capacity;
+    private final long[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private int size = 0;
+
+    // Min-куча слотов по counts и обратный индекс слот → позиция в куче
+    private final int[] heap;
+    private final int[] heapPosition;
+
+    // Линейное пробирование, хранится слот + 1 (0 - пустая ячейка)
+    private final int[] table;
+    private final int tableMask;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("SpaceSaving capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapPosition = new int[capacity];
+
+        int tableSize = Integer.highestOneBit(capacity * 4 - 1) << 1;
+        this.table = new int[tableSize];
+        this.tableMask = tableSize - 1;
+    }
+
+    /**
+     * Учитывает одно вхождение значения.
+     *
+     * @param value значение
+     */
+    public void add(long value) {
+        int slot = find(value);
+        if (slot >= 0) {
+            counts[slot]++;
+            siftDown(heapPosition[slot]);
+            return;
+        }
+
+        if (size < capacity) {
+            slot = size++;
+            keys[slot] = value;
+            counts[slot] = 1;
+            errors[slot] = 0;
+            tableInsert(slot);
+            heap[slot] = slot;
+            heapPosition[slot] = slot;
+            siftUp(slot);
+            return;
+        }
+
+        // Вытесняем счётчик с минимальной частотой, новое значение наследует её как ошибку
+        slot = heap[0];
+        long minCount = counts[slot];
+        tableRemove(keys[slot]);
+        keys[slot] = value;
+        errors[slot] = minCount;
+        counts[slot] = minCount + 1;
+        tableInsert(slot);
+        siftDown(0);
+    }
+
+    /**
+     * Сливает другой скетч той же ёмкости (mergeable summaries).
+     * Значение, отсутствующее в заполненном скетче, могло встретиться в нём не чаще его минимума,
+     * поэтому к нему добавляется этот минимум. Из объединения остаются capacity наибольших счётчиков.
+     * Результат детерминирован для заданного порядка слияний.
+     *
+     * @param other скетч
+     */
+    public void merge(SpaceSaving other) {
+        if (other.capacity != capacity) {
+            throw new IllegalArgumentException("Cannot merge SpaceSaving with capacity "
+                    + capacity + " and " + other.capacity);
+        }
+
+        long thisMissing = size == capacity ? counts[heap[0]] : 0;
+        long otherMissing = other.size == other.capacity ? other.counts[other.heap[0]] : 0;
+
+        int total = 0;
+        long[] mergedKeys = new long[size + other.size];
+        long[] mergedCounts = new long[size + other.size];
+        long[] mergedErrors = new long[size + other.size];
+
+        for (int slot = 0; slot < size; slot++) {
+            int otherSlot = other.find(keys[slot]);
+            mergedKeys[total] = keys[slot];
+            mergedCounts[total] = counts[slot] + (otherSlot >= 0 ? other.counts[otherSlot] : otherMissing);
+            mergedErrors[total] = errors[slot] + (otherSlot >= 0 ? other.errors[otherSlot] : otherMissing);
+            total++;
+        }
+        for (int otherSlot = 0; otherSlot < other.size; otherSlot++) {
+            if (find(other.keys[otherSlot]) < 0) {
+                mergedKeys[total] = other.keys[otherSlot];
+                mergedCounts[total] = other.counts[otherSlot] + thisMissing;
+                mergedErrors[total] = other.errors[otherSlot] + thisMissing;
+                total++;
+            }
+        }
+
+        Integer[] order = sortedByCount(mergedKeys, mergedCounts, total);
+
+        size = 0;
+        Arrays.fill(table, 0);
+        for (int i = 0; i < Math.min(capacity, total); i++) {
+            int slot = size++;
+            keys[slot] = mergedKeys[order[i]];
+            counts[slot] = mergedCounts[order[i]];
+            errors[slot] = mergedErrors[order[i]];
+            tableInsert(slot);
+        }
+        // Слоты отсортированы по убыванию, куча строится заново
+        for (int slot = 0; slot < size; slot++) {
+            heap[slot] = slot;
+            heapPosition[slot] = slot;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Возвращает top-k значений по убыванию гарантированной частоты (count - error):
+     * значение встретилось не меньше указанного числа раз.
+     * Счётчиков обычно держат в несколько раз больше k, чтобы оценки первых k были точнее.
+     *
+     * @param k сколько значений вернуть
+     * @return значение → гарантированная частота
+     */
+    public Map<String, Long> getTopValuesMap(int k) {
+        long[] guaranteed = guaranteedCounts();
+        Integer[] order = sortedByCount(keys, guaranteed, size);
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(k, size); i++) {
+            top.put(String.valueOf(keys[order[i]]), guaranteed[order[i]]);
+        }
+        return top;
+    }
+
+    /**
+     * Возвращает наибольшую ошибку среди значений getTopValuesMap(k):
+     * истинная частота каждого из них не больше гарантированной плюс эта величина.
+     *
+     * @param k сколько значений вернуть
+     * @return максимальная ошибка, 0 - частоты точные
+     */
+    public long getTopValuesMaxError(int k) {
+        Integer[] order = sortedByCount(keys, guaranteedCounts(), size);
+        long maxError = 0;
+        for (int i = 0; i < Math.min(k, size); i++) {
+            maxError = Math.max(maxError, errors[order[i]]);
+        }
+        return maxError;
+    }
+
+    private long[] guaranteedCounts() {
+        long[] guaranteed = new long[size];
+        for (int slot = 0; slot < size; slot++) {
+            guaranteed[slot] = counts[slot] - errors[slot];
+        }
+        return guaranteed;
+    }
+
+    /**
+     * Индексы по убыванию count, при равенстве - по возрастанию значения (для детерминизма).
+     * Вызывается только при слиянии и формировании ответа, не на каждом add.
+     */
+    private static Integer[] sortedByCount(long[] keys, long[] counts, int length) {
+        Integer[] order = new Integer[length];
+        for (int i = 0; i < length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> counts[a] != counts[b]
+                ? Long.compare(counts[b], counts[a])
+                : Long.compare(keys[a], keys[b]));
+        return order;
+    }
+
+    private int find(long value) {
+        for (int i = bucket(value); ; i = (i + 1) & tableMask) {
+            int entry = table[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (keys[entry - 1] == value) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private void tableInsert(int slot) {
+        int i = bucket(keys[slot]);
+        while (table[i] != 0) {
+            i = (i + 1) & tableMask;
+        }
+        table[i] = slot + 1;
+    }
+
+    /**
+     * Удаление с обратным сдвигом: последующие элементы цепочки переносятся на освободившееся место,
+     * чтобы поиск не останавливался на "дыре".
+     */
+    private void tableRemove(long value) {
+        int i = bucket(value);
+        while (keys[table[i] - 1] != value) {
+            i = (i + 1) & tableMask;
+        }
+
+        int hole = i;
+        for (int j = (hole + 1) & tableMask; table[j] != 0; j = (j + 1) & tableMask) {
+            int home = bucket(keys[table[j] - 1]);
+            // Элемент j можно перенести в hole, если его домашняя ячейка не лежит в (hole, j]
+            if (((j - home) & tableMask) >= ((j - hole) & tableMask)) {
+                table[hole] = table[j];
+                hole = j;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private int bucket(long value) {
+        return (int) HyperLogLog.mix64(value) & tableMask;
+    }
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            moveInHeap(heap[parent], position);
+            position = parent;
+        }
+        moveInHeap(slot, position);
+    }
+
+    private void siftDown(int position) {
+        int slot = heap[position];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[slot] <= counts[heap[child]]) {
+                break;
+            }
+            moveInHeap(heap[child], position);
+            position = child;
+        }
+        moveInHeap(slot, position);
+    }
+
+    private void moveInHeap(int slot, int position) {
+        heap[position] = slot;
+        heapPosition[slot] = position;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.bauman.andesis.util;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Потоковый декодер чисел из тела запроса.
+ *
+ * Разбирает байты прямо из DataBuffer (через ByteBuffer-представления без копирования)
+ * и сразу добавляет значения в RandomStatsAggregator. Состояние между буферами (незаконченное
+ * число) хранится в полях декодера, поэтому память не зависит от размера тела.
+ */
+public abstract class StreamingNumberDecoder {
+
+    protected final RandomStatsAggregator aggregator;
+    private long bytesRead = 0;
+
+    protected StreamingNumberDecoder(RandomStatsAggregator aggregator) {
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * Разбирает очередной фрагмент тела. Буфер не освобождается - это делает вызывающий код.
+     *
+     * @param buffer фрагмент тела запроса
+     */
+    public void decode(DataBuffer buffer) {
+        bytesRead += buffer.readableByteCount();
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                decode(iterator.next());
+            }
+        }
+    }
+
+    /**
+     * Разбирает байты [position, limit) без изменения позиции буфера.
+     */
+    protected abstract void decode(ByteBuffer buffer);
+
+    /**
+     * Вызывается после последнего фрагмента: дописывает незаконченное значение или сообщает об обрыве.
+     */
+    public abstract void finish();
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+}
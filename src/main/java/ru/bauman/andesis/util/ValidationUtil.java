@@ -10,6 +10,7 @@ public class ValidationUtil {
     private static final long DEFAULT_COUNT = 1_000;
     private static final long MIN_RANGE = -1_000_000_000;
     private static final long MAX_RANGE = 1_000_000_000;
+    private static final int MAX_PARALLELISM = 64;
 
     public static void validateCount(long count) {
         if (count <= 0) {
@@ -32,6 +33,19 @@ public class ValidationUtil {
         }
     }
 
+    public static void validateParallelism(int parallelism) {
+        if (parallelism <= 0 || parallelism > MAX_PARALLELISM) {
+            throw new InvalidParametersException(
+                    "Parallelism must be within [1, " + MAX_PARALLELISM + "] (provided: " + parallelism + ")");
+        }
+    }
+
+    public static void validateBlocksPerChunk(int blocksPerChunk) {
+        if (blocksPerChunk <= 0) {
+            throw new InvalidParametersException("Blocks per chunk must be greater than 0");
+        }
+    }
+
     public static long getValidatedCount(Long count) {
         if (count == null) {
             return DEFAULT_COUNT;
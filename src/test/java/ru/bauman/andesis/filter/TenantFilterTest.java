@@ -0,0 +1,65 @@
+package ru.bauman.andesis.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import ru.bauman.andesis.config.FairQueueProperties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Порядок определения арендатора: API-ключ, X-Tenant-Id только от доверенного сервиса
+ * или без настроенных ключей, зарезервированные арендаторы из заголовка не принимаются.
+ */
+class TenantFilterTest {
+
+    @Test
+    void tenantHeaderIsTrustedWithoutConfiguredKeys() {
+        assertThat(resolve(new FairQueueProperties(), null, "dashboard")).isEqualTo("dashboard");
+        assertThat(resolve(new FairQueueProperties(), null, null)).isEqualTo(TenantFilter.DEFAULT_TENANT);
+    }
+
+    @Test
+    void apiKeyWinsOverTenantHeader() {
+        FairQueueProperties properties = new FairQueueProperties();
+        properties.getApiKeys().put("key-1", "dashboard");
+
+        assertThat(resolve(properties, "key-1", "batch")).isEqualTo("dashboard");
+        assertThat(resolve(properties, null, "batch")).isEqualTo(TenantFilter.DEFAULT_TENANT);
+        assertThat(resolve(properties, "unknown", "batch")).isEqualTo(TenantFilter.DEFAULT_TENANT);
+    }
+
+    @Test
+    void trustedServiceForwardsTenantHeader() {
+        FairQueueProperties properties = new FairQueueProperties();
+        properties.getTrustedApiKeys().add("service-a-key");
+
+        assertThat(resolve(properties, "service-a-key", "batch")).isEqualTo("batch");
+        assertThat(resolve(properties, "service-a-key", null)).isEqualTo(TenantFilter.DEFAULT_TENANT);
+    }
+
+    @Test
+    void reservedTenantIsNotAcceptedFromHeader() {
+        FairQueueProperties properties = new FairQueueProperties();
+        assertThat(resolve(properties, null, TenantFilter.CANARY_TENANT)).isEqualTo(TenantFilter.DEFAULT_TENANT);
+
+        properties.getTrustedApiKeys().add("service-a-key");
+        assertThat(resolve(properties, "service-a-key", " " + TenantFilter.CANARY_TENANT + " "))
+                .isEqualTo(TenantFilter.DEFAULT_TENANT);
+    }
+
+    private static String resolve(FairQueueProperties properties, String apiKey, String tenant) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/api/random/statistics");
+        if (apiKey != null) {
+            request.header(TenantFilter.API_KEY_HEADER, apiKey);
+        }
+        if (tenant != null) {
+            request.header(TenantFilter.TENANT_HEADER, tenant);
+        }
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+
+        new TenantFilter(properties).filter(exchange, filtered -> Mono.empty()).block();
+        return exchange.getAttribute(TenantFilter.TENANT_CONTEXT_KEY);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.bauman.andesis.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import ru.bauman.andesis.exception.QuotaExceededException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Ответ 429 Сервиса B доходит до клиентов Сервиса A как QuotaExceededException (429) без повторов.
+ */
+class ClientServiceTest {
+
+    @Test
+    void tooManyRequestsFromServiceBBecomesQuotaExceeded() {
+        AtomicInteger calls = new AtomicInteger();
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    calls.incrementAndGet();
+                    return Mono.just(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body("{\"error\":\"QUOTA_EXCEEDED\",\"message\":\"Tenant 'default' queue is full\",\"status\":429}")
+                            .build());
+                })
+                .build();
+
+        ClientService clientService = new ClientService(webClient);
+        ReflectionTestUtils.setField(clientService, "serviceBUrl", "http://service-b");
+        ReflectionTestUtils.setField(clientService, "timeoutSeconds", 5L);
+        ReflectionTestUtils.setField(clientService, "serviceBApiKey", "");
+
+        assertThatThrownBy(() -> clientService.fetchRandomStatistics(1000L, 0L, 100L, null).block())
+                .isInstanceOf(QuotaExceededException.class)
+                .hasMessageContaining("Tenant 'default' queue is full");
+        assertThat(calls).hasValue(1);
+    }
+}
@@ -0,0 +1,86 @@
+package ru.bauman.andesis.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.bauman.andesis.dto.RandomStatisticsDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Воспроизводимая генерация: при любых parallelism и blocksPerChunk результат
+ * должен бит-в-бит совпадать с последовательным режимом (1 поток, чанк = 1 блок).
+ */
+class RandomNumberGeneratorTest {
+
+    private static final long SEED = 42L;
+    private static final long MIN = -1_000_000L;
+    private static final long MAX = 1_000_000L;
+
+    // Не кратно BLOCK_SIZE: последний блок неполный
+    private static final long COUNT = 10L * RandomNumberGenerator.BLOCK_SIZE + 12_345;
+
+    private RandomNumberGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        AggregatorFactory aggregatorFactory = new AggregatorFactory();
+        ReflectionTestUtils.setField(aggregatorFactory, "hllPrecision", 14);
+        ReflectionTestUtils.setField(aggregatorFactory, "topK", 10);
+        ReflectionTestUtils.setField(aggregatorFactory, "topKCapacity", 256);
+        ReflectionTestUtils.setField(aggregatorFactory, "exactTopValuesMaxRange", 65_536);
+        generator = new RandomNumberGenerator(aggregatorFactory);
+    }
+
+    @ParameterizedTest(name = "parallelism={0}, blocksPerChunk={1}, sketches={2}")
+    @CsvSource({
+            "1, 4, false",
+            "2, 1, false",
+            "4, 3, false",
+            "8, 8, false",
+            "16, 1, false",
+            "64, 2, false",
+            "2, 1, true",
+            "4, 3, true",
+            "16, 1, true"
+    })
+    void seededStatisticsMatchSequentialBaseline(int parallelism, int blocksPerChunk, boolean sketches) {
+        RandomStatisticsDto baseline = generator.generateStatistics(COUNT, MIN, MAX, SEED, 1, 1, sketches).block();
+        RandomStatisticsDto actual = generator.generateStatistics(COUNT, MIN, MAX, SEED, parallelism, blocksPerChunk, sketches).block();
+
+        assertThat(baseline).isNotNull();
+        assertThat(actual).isNotNull();
+        assertThat(actual.getCount()).isEqualTo(COUNT);
+        assertThat(actual.getSeed()).isEqualTo(SEED);
+
+        assertThat(actual.getMin()).isEqualTo(baseline.getMin());
+        assertThat(actual.getMax()).isEqualTo(baseline.getMax());
+        assertThat(Double.doubleToRawLongBits(actual.getMean()))
+                .isEqualTo(Double.doubleToRawLongBits(baseline.getMean()));
+        assertThat(Double.doubleToRawLongBits(actual.getStandardDeviation()))
+                .isEqualTo(Double.doubleToRawLongBits(baseline.getStandardDeviation()));
+        assertThat(actual.getHistogram()).containsExactlyEntriesOf(baseline.getHistogram());
+        assertThat(actual.getDistinctCount()).isEqualTo(baseline.getDistinctCount());
+        assertThat(actual.getTopValues()).isEqualTo(baseline.getTopValues());
+        assertThat(actual.getTopValuesMaxError()).isEqualTo(baseline.getTopValuesMaxError());
+    }
+
+    /**
+     * Узкий диапазон считается точно: частоты top-k складываются из частичных агрегатов блоков
+     * без ошибки и не зависят от разбиения на чанки.
+     */
+    @Test
+    void narrowRangeTopValuesAreExact() {
+        RandomStatisticsDto baseline = generator.generateStatistics(COUNT, 0, 1000, SEED, 1, 1, true).block();
+        RandomStatisticsDto parallel = generator.generateStatistics(COUNT, 0, 1000, SEED, 4, 3, true).block();
+
+        assertThat(baseline).isNotNull();
+        assertThat(parallel).isNotNull();
+        assertThat(baseline.getTopValuesMaxError()).isZero();
+        assertThat(baseline.getTopValues()).hasSize(10)
+                .allSatisfy((value, count) -> assertThat(count).isBetween(COUNT / 1001 / 2, COUNT / 1001 * 2));
+        assertThat(parallel.getTopValues()).containsExactlyEntriesOf(baseline.getTopValues());
+    }
+}
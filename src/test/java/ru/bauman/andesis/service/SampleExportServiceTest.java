@@ -0,0 +1,102 @@
+package ru.bauman.andesis.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.bauman.andesis.config.FairQueueProperties;
+import ru.bauman.andesis.dto.SampleExportDto;
+import ru.bauman.andesis.exception.ExportNotFoundException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Удаление экспорта, который сейчас скачивается: DELETE сразу убирает его из реестра,
+ * а файл и место в квоте освобождаются только после закрытия последнего lease.
+ */
+class SampleExportServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private SampleExportService exportService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        AggregatorFactory aggregatorFactory = new AggregatorFactory();
+        ReflectionTestUtils.setField(aggregatorFactory, "hllPrecision", 14);
+        ReflectionTestUtils.setField(aggregatorFactory, "topK", 10);
+        ReflectionTestUtils.setField(aggregatorFactory, "topKCapacity", 256);
+        ReflectionTestUtils.setField(aggregatorFactory, "exactTopValuesMaxRange", 65_536);
+
+        exportService = new SampleExportService(aggregatorFactory,
+                new FairScheduler(new FairQueueProperties(), new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(exportService, "directoryName", directory.toString());
+        ReflectionTestUtils.setField(exportService, "ttl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(exportService, "maxTotalSizeMb", 16L);
+        ReflectionTestUtils.setField(exportService, "cleanupInterval", Duration.ofMinutes(10));
+        exportService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        exportService.shutdown();
+    }
+
+    @Test
+    void deleteWaitsForActiveDownloads() throws Exception {
+        SampleExportDto export = export();
+        SampleExportService.Lease first = exportService.acquire(export.getId());
+        SampleExportService.Lease second = exportService.acquire(export.getId());
+        Path path = first.file().path();
+
+        assertThat(exportService.delete(export.getId())).isTrue();
+        assertThat(exportService.delete(export.getId())).isFalse();
+        assertThatThrownBy(() -> exportService.acquire(export.getId()))
+                .isInstanceOf(ExportNotFoundException.class);
+
+        first.close();
+        // Повторное закрытие не должно снять чужую ссылку
+        first.close();
+        assertThat(path).exists();
+        assertThat(Files.size(path)).isEqualTo(export.getSizeBytes());
+        assertThat(usedBytes()).isEqualTo(export.getSizeBytes());
+
+        second.close();
+        assertThat(path).doesNotExist();
+        assertThat(usedBytes()).isZero();
+    }
+
+    @Test
+    void deleteWithoutDownloadsRemovesFileImmediately() {
+        SampleExportDto export = export();
+        SampleExportService.Lease lease = exportService.acquire(export.getId());
+        Path path = lease.file().path();
+        lease.close();
+
+        assertThat(path).exists();
+        assertThat(exportService.delete(export.getId())).isTrue();
+        assertThat(path).doesNotExist();
+        assertThat(usedBytes()).isZero();
+    }
+
+    private SampleExportDto export() {
+        SampleExportDto export = exportService.export(100_000, 0, 1000, 42L, SampleExportService.Format.INT64_LE, false)
+                .block();
+        assertThat(export).isNotNull();
+        assertThat(export.getSizeBytes()).isEqualTo(100_000L * Long.BYTES);
+        return export;
+    }
+
+    private long usedBytes() {
+        return ((AtomicLong) ReflectionTestUtils.getField(exportService, "usedBytes")).get();
+    }
+}
@@ -0,0 +1,60 @@
+package ru.bauman.andesis.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ExactFrequencies: точные частоты узкого диапазона, значения вне диапазона и слияние.
+ */
+class ExactFrequenciesTest {
+
+    @Test
+    void countsExactlyOrderedByCountThenByValue() {
+        ExactFrequencies frequencies = new ExactFrequencies(-5, 11, 8);
+        for (long value : new long[]{-5, 5, 0, 0, 5, 3, 3, -5, 0}) {
+            frequencies.add(value);
+        }
+
+        assertThat(frequencies.getTopValuesMap(3)).containsExactly(
+                Map.entry("0", 3L), Map.entry("-5", 2L), Map.entry("3", 2L));
+        assertThat(frequencies.getTopValuesMap(10)).hasSize(4);
+        assertThat(frequencies.getTopValuesMaxError(3)).isZero();
+    }
+
+    @Test
+    void valuesOutsideRangeAreCountedSeparately() {
+        ExactFrequencies frequencies = new ExactFrequencies(0, 10, 8);
+        for (int i = 0; i < 5; i++) {
+            frequencies.add(Long.MAX_VALUE);
+            frequencies.add(Long.MIN_VALUE);
+            frequencies.add(-1);
+        }
+        frequencies.add(10);
+        frequencies.add(9);
+
+        assertThat(frequencies.getTopValuesMap(5)).containsExactly(
+                Map.entry(String.valueOf(Long.MIN_VALUE), 5L), Map.entry("-1", 5L),
+                Map.entry(String.valueOf(Long.MAX_VALUE), 5L), Map.entry("9", 1L), Map.entry("10", 1L));
+        assertThat(frequencies.getTopValuesMaxError(5)).isZero();
+    }
+
+    @Test
+    void mergeAddsCounts() {
+        ExactFrequencies left = new ExactFrequencies(100, 1001, 8);
+        ExactFrequencies right = new ExactFrequencies(100, 1001, 8);
+        for (long value = 100; value <= 1100; value++) {
+            left.add(value);
+            right.add(value);
+        }
+        right.add(777);
+        right.add(5_000);
+
+        left.merge(right);
+
+        assertThat(left.getTopValuesMap(2)).containsExactly(Map.entry("777", 3L), Map.entry("100", 2L));
+        assertThat(left.getTopValuesMap(1002)).containsEntry("5000", 1L);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.bauman.andesis.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * HyperLogLog: относительная ошибка в пределах трёх стандартных отклонений 1.04/√m,
+ * слияние эквивалентно скетчу объединения.
+ */
+class HyperLogLogTest {
+
+    @ParameterizedTest(name = "precision={0}, distinct={1}")
+    @CsvSource({
+            "14, 10",
+            "14, 1000",
+            "14, 100000",
+            "14, 2000000",
+            "10, 50000",
+            "18, 1000000"
+    })
+    void estimateWithinErrorBound(int precision, long distinct) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        // Соседние значения, как в узком диапазоне генерации, и повторы, которые не должны менять оценку
+        for (long value = -distinct / 2; value < distinct - distinct / 2; value++) {
+            sketch.add(value);
+            sketch.add(value);
+        }
+
+        double tolerance = 3 * 1.04 / Math.sqrt(1 << precision);
+        assertThat((double) sketch.estimate()).isCloseTo(distinct, within(Math.max(1.0, distinct * tolerance)));
+    }
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertThat(new HyperLogLog(14).estimate()).isZero();
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        HyperLogLog union = new HyperLogLog(12);
+        for (long value = 0; value < 300_000; value++) {
+            // Половины пересекаются на 100000 значений
+            if (value < 200_000) {
+                left.add(value);
+            }
+            if (value >= 100_000) {
+                right.add(value);
+            }
+            union.add(value);
+        }
+
+        HyperLogLog reversed = new HyperLogLog(12);
+        reversed.merge(right);
+        reversed.merge(left);
+        left.merge(right);
+
+        assertThat(left.estimate()).isEqualTo(union.estimate());
+        assertThat(reversed.estimate()).isEqualTo(union.estimate());
+    }
+
+    @Test
+    void rejectsInvalidPrecision() {
+        assertThatThrownBy(() -> new HyperLogLog(HyperLogLog.MIN_PRECISION - 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HyperLogLog(HyperLogLog.MAX_PRECISION + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HyperLogLog(10).merge(new HyperLogLog(12)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.bauman.andesis.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сумма агрегатора не переполняется на крайних значениях long.
+ */
+class RandomStatsAggregatorTest {
+
+    // Значения вне диапазона гистограммы попадают в крайние корзины, на сумму это не влияет
+    private static final long RANGE_MIN = -1_000_000L;
+    private static final long RANGE_MAX = 1_000_000L;
+
+    @Test
+    void meanOfMaxValuesDoesNotOverflow() {
+        RandomStatsAggregator aggregator = new RandomStatsAggregator(RANGE_MIN, RANGE_MAX);
+        aggregator.add(Long.MAX_VALUE);
+        aggregator.add(Long.MAX_VALUE);
+
+        assertThat(aggregator.getSum()).isEqualTo(BigInteger.valueOf(Long.MAX_VALUE).shiftLeft(1));
+        assertThat(aggregator.getMean()).isEqualTo((double) Long.MAX_VALUE);
+    }
+
+    @Test
+    void mergedSumMatchesSequentialSum() {
+        long[] values = {Long.MIN_VALUE, Long.MIN_VALUE, -1, Long.MAX_VALUE, 42, Long.MIN_VALUE};
+
+        RandomStatsAggregator sequential = new RandomStatsAggregator(RANGE_MIN, RANGE_MAX);
+        RandomStatsAggregator left = new RandomStatsAggregator(RANGE_MIN, RANGE_MAX);
+        RandomStatsAggregator right = new RandomStatsAggregator(RANGE_MIN, RANGE_MAX);
+        BigInteger expected = BigInteger.ZERO;
+        for (int i = 0; i < values.length; i++) {
+            sequential.add(values[i]);
+            (i < values.length / 2 ? left : right).add(values[i]);
+            expected = expected.add(BigInteger.valueOf(values[i]));
+        }
+        left.merge(right);
+
+        assertThat(sequential.getSum()).isEqualTo(expected);
+        assertThat(left.getSum()).isEqualTo(expected);
+        assertThat(left.getMean()).isEqualTo(sequential.getMean());
+    }
+}
@@ -0,0 +1,110 @@
+package ru.bauman.andesis.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * SpaceSaving: точность при достаточной ёмкости, границы ошибки при вытеснении
+ * (куча, удаление с обратным сдвигом из хэш-таблицы) и при слиянии.
+ */
+class SpaceSavingTest {
+
+    @Test
+    void countsAreExactWhenCapacityCoversAllValues() {
+        SpaceSaving sketch = new SpaceSaving(16);
+        Map<Long, Long> truth = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextLong(10);
+            sketch.add(value);
+            truth.merge(value, 1L, Long::sum);
+        }
+
+        Map<String, Long> top = sketch.getTopValuesMap(10);
+        assertThat(top).hasSize(10);
+        top.forEach((value, count) -> assertThat(count).isEqualTo(truth.get(Long.parseLong(value))));
+        assertThat(sketch.getTopValuesMaxError(10)).isZero();
+    }
+
+    @Test
+    void orderedByCountThenByValue() {
+        SpaceSaving sketch = new SpaceSaving(8);
+        for (long value : new long[]{5, 3, 3, 7, 7, 1}) {
+            sketch.add(value);
+        }
+
+        assertThat(sketch.getTopValuesMap(4)).containsExactly(
+                Map.entry("3", 2L), Map.entry("7", 2L), Map.entry("1", 1L), Map.entry("5", 1L));
+    }
+
+    @Test
+    void evictionKeepsBoundsAndHeavyHitters() {
+        int capacity = 8;
+        int length = 200_000;
+        SpaceSaving sketch = new SpaceSaving(capacity);
+        Map<Long, Long> truth = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(7);
+
+        // Два частых значения на фоне постоянно вытесняемого шума из небольшого домена:
+        // те же ключи многократно удаляются и снова вставляются в хэш-таблицу
+        for (int i = 0; i < length; i++) {
+            long value = i % 4 == 0 ? 1_000 : i % 4 == 1 ? -42 : random.nextLong(64);
+            sketch.add(value);
+            truth.merge(value, 1L, Long::sum);
+        }
+
+        assertBounds(sketch, truth, capacity);
+        // Частота больше length / capacity - значение гарантированно в скетче
+        assertThat(sketch.getTopValuesMap(2)).containsOnlyKeys("1000", "-42");
+    }
+
+    @Test
+    void mergeKeepsBounds() {
+        int capacity = 16;
+        SpaceSaving left = new SpaceSaving(capacity);
+        SpaceSaving right = new SpaceSaving(capacity);
+        Map<Long, Long> truth = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(3);
+
+        for (int i = 0; i < 100_000; i++) {
+            // Разные частые значения в половинах: при слиянии используется минимум другого скетча
+            long value = i % 3 == 0 ? (i < 50_000 ? 11 : 22) : random.nextLong(500);
+            (i < 50_000 ? left : right).add(value);
+            truth.merge(value, 1L, Long::sum);
+        }
+        left.merge(right);
+
+        assertBounds(left, truth, capacity);
+        assertThat(left.getTopValuesMap(2)).containsOnlyKeys("11", "22");
+    }
+
+    @Test
+    void mergeRequiresSameCapacity() {
+        assertThatThrownBy(() -> new SpaceSaving(8).merge(new SpaceSaving(16)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SpaceSaving(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Скетч держит ровно capacity различных ключей (дубликат означал бы потерю ключа в хэш-таблице),
+     * и для каждого гарантированная частота ≤ истинной ≤ гарантированная + maxError.
+     */
+    private static void assertBounds(SpaceSaving sketch, Map<Long, Long> truth, int capacity) {
+        Map<String, Long> all = sketch.getTopValuesMap(capacity);
+        long maxError = sketch.getTopValuesMaxError(capacity);
+
+        assertThat(all).hasSize(capacity);
+        all.forEach((value, guaranteed) -> {
+            long actual = truth.get(Long.parseLong(value));
+            assertThat(guaranteed).isLessThanOrEqualTo(actual);
+            assertThat(actual).isLessThanOrEqualTo(guaranteed + maxError);
+        });
+    }
+}